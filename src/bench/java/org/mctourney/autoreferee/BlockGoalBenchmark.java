@@ -0,0 +1,51 @@
+package org.mctourney.autoreferee;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.mctourney.autoreferee.goals.BlockGoal;
+import org.mctourney.autoreferee.util.BlockData;
+
+/**
+ * Searching around a victory monument for its block, done on every block placed near
+ * the monument. The block is never found, so the whole range is searched.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class BlockGoalBenchmark
+{
+	private Location target;
+	private BlockData wool = new BlockData(Material.WOOL);
+
+	@Setup
+	public void setup()
+	{
+		World world = Stubs.world("bench", new Stubs.Terrain()
+		{
+			public Material getType(int x, int y, int z)
+			{ return y < 64 ? Material.STONE : Material.AIR; }
+		});
+		target = new Location(world, 0, 64, 0);
+	}
+
+	@Benchmark
+	public Location blockInRange()
+	{ return BlockGoal.blockInRange(wool, target, 2); }
+}
@@ -0,0 +1,86 @@
+package org.mctourney.autoreferee;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.mctourney.autoreferee.util.BlockData;
+import org.mctourney.autoreferee.util.worldsearch.ObjectiveExhaustionMasterTask;
+import org.mctourney.autoreferee.util.worldsearch.WorkerAsyncSearchSnapshots;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Searching a chunk snapshot for goal blocks, as each of the exhaustion search threads
+ * does for every chunk in the map. Snapshots are stubs, so every block read goes through
+ * a proxy call; compare results between runs rather than against a real server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class ExhaustionSearchBenchmark
+{
+	private static final int CHUNKS = 16;
+
+	private ObjectiveExhaustionMasterTask search;
+	private WorkerAsyncSearchSnapshots searcher;
+
+	private ChunkSnapshot[] chunks = new ChunkSnapshot[CHUNKS];
+	private int next = 0;
+
+	@Setup
+	public void setup()
+	{
+		Set<BlockData> goals = Sets.newHashSet();
+		for (int color = 0; color < 6; ++color)
+			goals.add(new BlockData(Material.WOOL, (byte) color));
+
+		search = Stubs.exhaustionSearch(goals);
+		searcher = new WorkerAsyncSearchSnapshots(search);
+
+		// solid ground up to y=64, with a few wool blocks of every color scattered through it
+		Random random = new Random(1L);
+		for (int c = 0; c < CHUNKS; ++c)
+		{
+			int[] ids = new int[256 << 8];
+			byte[] data = new byte[256 << 8];
+			for (int i = 0; i < 64 << 8; ++i) ids[i] = Material.STONE.getId();
+
+			for (int n = 0; n < 8; ++n)
+			{
+				int i = random.nextInt(64 << 8);
+				ids[i] = Material.WOOL.getId();
+				data[i] = (byte) random.nextInt(16);
+			}
+			chunks[c] = Stubs.chunk(c & 3, c >> 2, ids, data);
+		}
+	}
+
+	@Benchmark
+	public int consume()
+	{
+		// the searcher returns once the queue is empty, since all snapshots are added
+		search.snapshots.add(chunks[next++ & (CHUNKS - 1)]);
+		searcher.run();
+
+		int found = search.found.size();
+		search.found.clear();
+		return found;
+	}
+}
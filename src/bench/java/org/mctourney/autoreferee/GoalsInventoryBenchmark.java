@@ -0,0 +1,70 @@
+package org.mctourney.autoreferee;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.mctourney.autoreferee.listeners.GoalsInventorySnapshot;
+import org.mctourney.autoreferee.util.BlockData;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Goal inventory snapshots, taken whenever a player's inventory or a container changes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class GoalsInventoryBenchmark
+{
+	private List<ItemStack> items = Lists.newArrayList();
+	private Set<BlockData> goals = Sets.newHashSet();
+
+	private GoalsInventorySnapshot before, after;
+
+	@Setup
+	public void setup()
+	{
+		// a full inventory of assorted blocks, with a few of the goal wools mixed in
+		Material[] filler = { Material.STONE, Material.WOOD, Material.COBBLESTONE, Material.TORCH };
+		for (int i = 0; i < 36; ++i)
+		{
+			if (i % 9 == 0) items.add(new ItemStack(Material.WOOL, 1, (short) (i / 9)));
+			else items.add(new ItemStack(filler[i % filler.length], 64));
+		}
+
+		for (int color = 0; color < 6; ++color)
+			goals.add(new BlockData(Material.WOOL, (byte) color));
+
+		before = GoalsInventorySnapshot.fromItemsAndGoals(items, goals);
+		after = new GoalsInventorySnapshot(before);
+		after.remove(new BlockData(Material.WOOL, (byte) 0));
+		after.put(new BlockData(Material.WOOL, (byte) 5), 2);
+	}
+
+	@Benchmark
+	public GoalsInventorySnapshot snapshot()
+	{ return GoalsInventorySnapshot.fromItemsAndGoals(items, goals); }
+
+	@Benchmark
+	public GoalsInventorySnapshot diff()
+	{ return new GoalsInventorySnapshot(Maps.difference(before, after)); }
+}
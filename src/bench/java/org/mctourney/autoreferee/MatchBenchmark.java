@@ -0,0 +1,129 @@
+package org.mctourney.autoreferee;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.mctourney.autoreferee.listeners.ZoneListener;
+import org.mctourney.autoreferee.regions.AutoRefRegion;
+import org.mctourney.autoreferee.regions.CuboidRegion;
+
+/**
+ * Player lookups on a full match, and AutoRefTeam.canEnter, which ZoneListener calls on
+ * every player movement, both from a precomputed lane and with the exact region check.
+ * ZoneListener.playerMove is also run as a whole, for a player walking around their lane.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class MatchBenchmark
+{
+	private static final int LOCATIONS = 1024;
+
+	private AutoRefMatch match;
+	private AutoRefTeam laneTeam, exactTeam;
+
+	private Location[] locations = new Location[LOCATIONS];
+	private int next = 0;
+
+	private ZoneListener zoneListener;
+	private PlayerMoveEvent[] moves = new PlayerMoveEvent[LOCATIONS];
+	private Location[] moverLocation = new Location[1];
+
+	@Setup
+	public void setup()
+	{
+		World world = Stubs.world("bench", null);
+		match = Stubs.match(world, true);
+
+		// two teams of eight, indexed as they would be on joining
+		for (int t = 0; t < 2; ++t) for (int i = 0; i < 8; ++i)
+			match.indexPlayer(new AutoRefPlayer("team" + t + "player" + i, null));
+
+		laneTeam = team(match);
+		exactTeam = team(Stubs.match(world, false));
+
+		Random random = new Random(1L);
+		for (int i = 0; i < LOCATIONS; ++i) locations[i] = new Location(world,
+			random.nextDouble() * 128 - 32, random.nextDouble() * 140, random.nextDouble() * 320 - 32);
+
+		// build the lane up front, rather than in the first iteration
+		laneTeam.canEnter(locations[0]);
+
+		// a player on the lane team, taking small steps well inside their lane
+		AutoReferee.getInstance().addMatch(match);
+		zoneListener = new ZoneListener(AutoReferee.getInstance());
+
+		Player mover = Stubs.player("mover", world, moverLocation);
+		match.indexPlayer(new AutoRefPlayer("mover", laneTeam));
+
+		Location from = new Location(world, 32.0, 64.0, 64.0);
+		for (int i = 0; i < LOCATIONS; ++i)
+		{
+			Location to = from.clone().add(random.nextDouble() * 0.6 - 0.3, 0.0, random.nextDouble() * 0.6 - 0.3);
+			moves[i] = new PlayerMoveEvent(mover, from, to);
+			from = to;
+		}
+		moverLocation[0] = from;
+	}
+
+	// a team with a long lane split by a no-entry wall, and a start region behind it
+	private static AutoRefTeam team(AutoRefMatch match)
+	{
+		World world = match.getWorld();
+		AutoRefTeam team = new AutoRefTeam();
+		team.match = match;
+		match.teams.add(team);
+
+		match.getStartRegions().add(new CuboidRegion(world, -16, 0, 60, 80, -16, 0));
+
+		AutoRefRegion lane = new CuboidRegion(world, 0, 64, 0, 128, 0, 256);
+		AutoRefRegion wall = new CuboidRegion(world, 0, 64, 0, 128, 126, 130).toggle(AutoRefRegion.Flag.NO_ENTRY);
+		for (AutoRefRegion reg : new AutoRefRegion[]{ lane, wall })
+		{ reg.addOwners(team); match.getRegions().add(reg); match.getRegionIndex().add(reg); }
+
+		team.invalidateLaneField();
+		return team;
+	}
+
+	@Benchmark
+	public AutoRefPlayer getPlayer()
+	{ return match.getPlayer("team1player5"); }
+
+	@Benchmark
+	public AutoRefPlayer findPlayer()
+	{ return match.findPlayer("team1player"); }
+
+	@Benchmark
+	public boolean canEnterLane()
+	{ return laneTeam.canEnter(locations[next++ & (LOCATIONS - 1)]); }
+
+	@Benchmark
+	public boolean canEnterExact()
+	{ return exactTeam.canEnter(locations[next++ & (LOCATIONS - 1)]); }
+
+	@Benchmark
+	public void playerMove()
+	{
+		PlayerMoveEvent event = moves[next++ & (LOCATIONS - 1)];
+		moverLocation[0] = event.getTo();
+		zoneListener.playerMove(event);
+	}
+}
@@ -0,0 +1,51 @@
+package org.mctourney.autoreferee;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Encoding a referee snapshot for the version 2 referee channel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class RefereeChannelBenchmark
+{
+	private List<String[]> snapshot = Lists.newArrayList();
+
+	@Setup
+	public void setup()
+	{
+		// roughly what a referee receives for a full 12 player match
+		for (int i = 0; i < 12; ++i)
+		{
+			String name = "player" + i;
+			snapshot.add(new String[]{ "match", "bench", "player", name, "hp", "20" });
+			snapshot.add(new String[]{ "match", "bench", "player", name, "armor", "12" });
+			snapshot.add(new String[]{ "match", "bench", "player", name, "kills", "0" });
+			snapshot.add(new String[]{ "match", "bench", "player", name, "deaths", "0" });
+			snapshot.add(new String[]{ "match", "bench", "team", i % 2 == 0 ? "Red" : "Blue", "player", "+" + name });
+		}
+	}
+
+	@Benchmark
+	public List<byte[]> encodeSnapshot() throws IOException
+	{ return RefereeChannel.encode(snapshot, true); }
+}
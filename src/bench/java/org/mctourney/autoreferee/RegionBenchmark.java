@@ -0,0 +1,83 @@
+package org.mctourney.autoreferee;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.mctourney.autoreferee.regions.AutoRefRegion;
+import org.mctourney.autoreferee.regions.CuboidRegion;
+import org.mctourney.autoreferee.regions.RegionIndex;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Region flag lookups, as done by AutoRefTeam.hasFlag for every block change and
+ * player movement, and the region distance checks behind AutoRefTeam.canEnter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class RegionBenchmark
+{
+	private static final int LOCATIONS = 1024;
+
+	private List<AutoRefRegion> regions = Lists.newArrayList();
+	private RegionIndex index = new RegionIndex();
+
+	private Location[] locations = new Location[LOCATIONS];
+	private int next = 0;
+
+	@Setup
+	public void setup()
+	{
+		World world = Stubs.world("bench", null);
+
+		// two mirrored lanes of regions, about the size of a race for wool map
+		for (int i = 0; i < 200; ++i)
+		{
+			double x = (i % 20) * 16, z = (i / 40) * 48 * (i % 2 == 0 ? 1 : -1);
+			AutoRefRegion reg = new CuboidRegion(world, x, x + 12, 0, 128, z, z + 40);
+			if (i % 3 == 0) reg.toggle(AutoRefRegion.Flag.NO_BUILD);
+
+			regions.add(reg);
+			index.add(reg);
+		}
+
+		Random random = new Random(1L);
+		for (int i = 0; i < LOCATIONS; ++i) locations[i] = new Location(world,
+			random.nextDouble() * 360 - 20, random.nextDouble() * 128, random.nextDouble() * 520 - 260);
+	}
+
+	@Benchmark
+	public boolean hasFlag()
+	{
+		Location loc = locations[next++ & (LOCATIONS - 1)];
+		return index.hasFlag(loc, AutoRefRegion.Flag.NO_BUILD, null, false);
+	}
+
+	@Benchmark
+	public double distanceToRegions()
+	{
+		Location loc = locations[next++ & (LOCATIONS - 1)];
+
+		double best = Double.POSITIVE_INFINITY;
+		for (AutoRefRegion reg : regions) best = Math.min(best, reg.distanceToRegion(loc));
+		return best;
+	}
+}
@@ -0,0 +1,72 @@
+package org.mctourney.autoreferee;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.mctourney.autoreferee.util.ReportTemplate;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Rendering the match report template, as ReportGenerator does at the end of every
+ * match, with a transcript the size of a long match.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class ReportBenchmark
+{
+	private static final int TRANSCRIPT_EVENTS = 2000;
+
+	private String source;
+	private ReportTemplate template;
+	private Map<String, ReportTemplate.Section> sections = Maps.newHashMap();
+
+	@Setup
+	public void setup() throws IOException
+	{
+		InputStream in = ReportBenchmark.class.getResourceAsStream("/webstats/report.htm");
+		try { source = IOUtils.toString(in, "UTF-8"); }
+		finally { IOUtils.closeQuietly(in); }
+		template = new ReportTemplate(source);
+
+		sections.put("title", ReportTemplate.text("Red vs. Blue"));
+		sections.put("map", ReportTemplate.text("Benchmark Map"));
+		sections.put("transcript", new ReportTemplate.Section()
+		{
+			public void write(Writer out) throws IOException
+			{
+				for (int i = 0; i < TRANSCRIPT_EVENTS; ++i) out.write(String.format(
+					"<tr class='transcript-event'><td>%02d:%02d</td><td>player%d broke Stone</td></tr>\n",
+					i / 60, i % 60, i % 16));
+			}
+		});
+	}
+
+	@Benchmark
+	public ReportTemplate compile()
+	{ return new ReportTemplate(source); }
+
+	@Benchmark
+	public void render() throws IOException
+	{ template.render(new NullWriter(), sections); }
+}
@@ -0,0 +1,273 @@
+package org.mctourney.autoreferee;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+
+import org.apache.commons.io.FileUtils;
+
+import org.mctourney.autoreferee.regions.RegionIndex;
+import org.mctourney.autoreferee.util.BlockData;
+import org.mctourney.autoreferee.util.worldsearch.ObjectiveExhaustionMasterTask;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+
+/**
+ * Lightweight stand-ins for server objects, so that benchmarks can run without a
+ * server. Only the methods the benchmarked code calls do anything; everything else
+ * returns null, zero, or false.
+ */
+public class Stubs
+{
+	/**
+	 * Decides which block is at each position in a stub world.
+	 */
+	public interface Terrain
+	{ public Material getType(int x, int y, int z); }
+
+	/**
+	 * Creates a stub world.
+	 *
+	 * @param name world name
+	 * @param terrain blocks in this world, or null if only locations are needed
+	 * @return stub world
+	 */
+	public static World world(final String name, final Terrain terrain)
+	{
+		return proxy(World.class, new InvocationHandler()
+		{
+			public Object invoke(Object proxy, Method method, Object[] args)
+			{
+				String m = method.getName();
+				if ("getName".equals(m)) return name;
+				if ("getMaxHeight".equals(m)) return 256;
+				if ("getUID".equals(m)) return UUID.nameUUIDFromBytes(name.getBytes());
+				if ("getBlockAt".equals(m))
+				{
+					World world = (World) proxy;
+					if (args.length == 1)
+					{
+						Location loc = (Location) args[0];
+						return block(world, terrain, loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+					}
+					return block(world, terrain, (Integer) args[0], (Integer) args[1], (Integer) args[2]);
+				}
+				return common(proxy, method, args, "World{" + name + "}");
+			}
+		});
+	}
+
+	/**
+	 * Creates a stub block.
+	 *
+	 * @param world world the block is in
+	 * @param terrain blocks in the world
+	 * @return stub block
+	 */
+	public static Block block(final World world, final Terrain terrain, final int x, final int y, final int z)
+	{
+		return proxy(Block.class, new InvocationHandler()
+		{
+			public Object invoke(Object proxy, Method method, Object[] args)
+			{
+				String m = method.getName();
+				if ("getX".equals(m)) return x;
+				if ("getY".equals(m)) return y;
+				if ("getZ".equals(m)) return z;
+				if ("getWorld".equals(m)) return world;
+				if ("getType".equals(m)) return terrain.getType(x, y, z);
+				if ("getTypeId".equals(m)) return terrain.getType(x, y, z).getId();
+				if ("getData".equals(m)) return (byte) 0;
+				if ("getLocation".equals(m) && args == null) return new Location(world, x, y, z);
+				if ("getRelative".equals(m) && args.length == 3) return block(world, terrain,
+					x + (Integer) args[0], y + (Integer) args[1], z + (Integer) args[2]);
+				return common(proxy, method, args, String.format("Block{%d,%d,%d}", x, y, z));
+			}
+		});
+	}
+
+	/**
+	 * Creates a stub chunk snapshot. Block ids and data are indexed by
+	 * {@code (y << 8) | (z << 4) | x}, and sections with no blocks are reported empty.
+	 *
+	 * @param cx chunk x coordinate
+	 * @param cz chunk z coordinate
+	 * @param ids block type ids, for 256 layers
+	 * @param data block data values, for 256 layers
+	 * @return stub chunk snapshot
+	 */
+	public static ChunkSnapshot chunk(final int cx, final int cz, final int[] ids, final byte[] data)
+	{
+		final boolean[] empty = new boolean[16];
+		for (int sy = 0; sy < 16; ++sy)
+		{
+			empty[sy] = true;
+			for (int i = sy << 12; i < (sy + 1) << 12; ++i) if (ids[i] != 0) { empty[sy] = false; break; }
+		}
+
+		return proxy(ChunkSnapshot.class, new InvocationHandler()
+		{
+			public Object invoke(Object proxy, Method method, Object[] args)
+			{
+				String m = method.getName();
+				if ("getX".equals(m)) return cx;
+				if ("getZ".equals(m)) return cz;
+				if ("isSectionEmpty".equals(m)) return empty[(Integer) args[0]];
+				if ("getBlockTypeId".equals(m)) return ids[index(args)];
+				if ("getBlockData".equals(m)) return (int) data[index(args)];
+				return common(proxy, method, args, String.format("ChunkSnapshot{%d,%d}", cx, cz));
+			}
+		});
+	}
+
+	private static int index(Object[] args)
+	{ return ((Integer) args[1] << 8) | ((Integer) args[2] << 4) | (Integer) args[0]; }
+
+	/**
+	 * Creates a stub player in survival mode.
+	 *
+	 * @param name player name
+	 * @param world world the player is in
+	 * @param location holds the player's current location, may be changed at any time
+	 * @return stub player
+	 */
+	public static Player player(final String name, final World world, final Location[] location)
+	{
+		return proxy(Player.class, new InvocationHandler()
+		{
+			public Object invoke(Object proxy, Method method, Object[] args)
+			{
+				String m = method.getName();
+				if ("getName".equals(m)) return name;
+				if ("getWorld".equals(m)) return world;
+				if ("getLocation".equals(m) && args == null) return location[0].clone();
+				if ("getGameMode".equals(m)) return GameMode.SURVIVAL;
+				return common(proxy, method, args, "Player{" + name + "}");
+			}
+		});
+	}
+
+	/**
+	 * Creates an objective exhaustion search for the given goals. The constructor needs a
+	 * server, so it is skipped, and only the queues used by the snapshot searchers are set
+	 * up. All snapshots are marked as added, so searchers return once the queue is empty.
+	 *
+	 * @param goals goal blocks to search for
+	 * @return stub search
+	 */
+	public static ObjectiveExhaustionMasterTask exhaustionSearch(Set<BlockData> goals)
+	{
+		ObjectiveExhaustionMasterTask task = allocate(ObjectiveExhaustionMasterTask.class);
+		task.searching = ImmutableSet.copyOf(goals);
+		task.snapshots = Queues.newLinkedBlockingQueue();
+		task.found = Queues.newConcurrentLinkedQueue();
+		task.all_snapshots_added = true;
+
+		set(ObjectiveExhaustionMasterTask.class, task, "chunksSearched", new AtomicInteger(0));
+		return task;
+	}
+
+	private static AutoReferee plugin = null;
+
+	/**
+	 * Creates a match in progress in a stub world. The match constructor needs a server,
+	 * so it is skipped, and only the fields used by player lookups, lane checks and
+	 * player movement are set up.
+	 *
+	 * @param world world for the match
+	 * @param useLaneFields whether teams should precompute their lanes
+	 * @return stub match
+	 */
+	public static AutoRefMatch match(World world, boolean useLaneFields)
+	{
+		plugin();
+		AutoRefMatch match = allocate(AutoRefMatch.class);
+
+		set(AutoRefMatch.class, match, "primaryWorld", world);
+		set(AutoRefMatch.class, match, "teams", Sets.newHashSet());
+		set(AutoRefMatch.class, match, "regions", Sets.newHashSet());
+		set(AutoRefMatch.class, match, "regionIndex", new RegionIndex());
+		set(AutoRefMatch.class, match, "startRegions", Sets.newHashSet());
+		set(AutoRefMatch.class, match, "playerIndex", Maps.newHashMap());
+		set(AutoRefMatch.class, match, "currentState", AutoRefMatch.MatchStatus.PLAYING);
+		match.useLaneFields = useLaneFields;
+		return match;
+	}
+
+	// the match class reads the plugin's configuration when it is loaded
+	private static synchronized void plugin()
+	{
+		if (plugin != null) return;
+		plugin = allocate(AutoReferee.class);
+
+		set(org.bukkit.plugin.java.JavaPlugin.class, plugin, "newConfig", new YamlConfiguration());
+		set(org.bukkit.plugin.java.JavaPlugin.class, plugin, "dataFolder",
+			new File(FileUtils.getTempDirectory(), "autoreferee-bench"));
+		set(AutoReferee.class, plugin, "matches", Maps.newHashMap());
+		set(AutoReferee.class, null, "instance", plugin);
+	}
+
+	// creates an object without running any of its constructors
+	private static <T> T allocate(Class<T> cls)
+	{
+		try
+		{
+			Field field = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			Object unsafe = field.get(null);
+			return cls.cast(unsafe.getClass().getMethod("allocateInstance", Class.class).invoke(unsafe, cls));
+		}
+		catch (Exception e) { throw new RuntimeException("Could not create " + cls.getSimpleName(), e); }
+	}
+
+	private static void set(Class<?> cls, Object obj, String name, Object value)
+	{
+		try
+		{
+			Field field = cls.getDeclaredField(name);
+			field.setAccessible(true);
+			field.set(obj, value);
+		}
+		catch (Exception e) { throw new RuntimeException("Could not set " + cls.getSimpleName() + "." + name, e); }
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> cls, InvocationHandler handler)
+	{ return (T) Proxy.newProxyInstance(cls.getClassLoader(), new Class<?>[]{ cls }, handler); }
+
+	private static Object common(Object proxy, Method method, Object[] args, String desc)
+	{
+		String m = method.getName();
+		if ("equals".equals(m)) return proxy == args[0];
+		if ("hashCode".equals(m)) return System.identityHashCode(proxy);
+		if ("toString".equals(m)) return desc;
+
+		Class<?> type = method.getReturnType();
+		if (!type.isPrimitive() || type == Void.TYPE) return null;
+		if (type == Boolean.TYPE) return false;
+		if (type == Character.TYPE) return '\0';
+		if (type == Byte.TYPE) return (byte) 0;
+		if (type == Short.TYPE) return (short) 0;
+		if (type == Integer.TYPE) return 0;
+		if (type == Long.TYPE) return 0L;
+		if (type == Float.TYPE) return 0.0f;
+		return 0.0;
+	}
+}
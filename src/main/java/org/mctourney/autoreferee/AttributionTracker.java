@@ -0,0 +1,198 @@
+package org.mctourney.autoreferee;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Remembers who is responsible for the primed TNT, arrows, and fireballs in a match,
+ * and where projectiles were fired from. Entries are keyed by entity id, and are
+ * dropped when the entity is removed or once they are older than {@link #MAX_AGE}
+ * ticks. TNT ignited by another player's explosion is remembered by block position
+ * until it primes.
+ */
+public class AttributionTracker
+{
+	// ticks between sweeps for expired entries
+	private static final long SWEEP_INTERVAL = 20L;
+
+	// ticks an entry is kept for, long enough for any fuse or flight
+	private static final long MAX_AGE = 60 * 20L;
+
+	private static class Attribution
+	{
+		Entity entity;
+		AutoRefPlayer owner;
+		long tick;
+
+		boolean hasOrigin = false;
+		double x, y, z;
+	}
+
+	private final AutoRefMatch match;
+
+	private final Map<Integer, Attribution> entities = Maps.newHashMap();
+
+	// owners of tnt blocks caught in an explosion, by packed block position
+	private final Map<Long, Attribution> propagation = Maps.newHashMap();
+
+	// ticks since this tracker was created, advanced by each sweep
+	private long ticks = 0L;
+	private BukkitRunnable sweepTask = null;
+
+	AttributionTracker(AutoRefMatch match)
+	{ this.match = match; }
+
+	private static long blockKey(Block block)
+	{
+		return ((long) (block.getX() & 0x3FFFFFF) << 38)
+			| ((long) (block.getZ() & 0x3FFFFFF) << 12) | (block.getY() & 0xFFF);
+	}
+
+	private Attribution create(AutoRefPlayer owner)
+	{
+		Attribution a = new Attribution();
+		a.owner = owner; a.tick = ticks;
+
+		if (sweepTask == null)
+		{
+			sweepTask = new BukkitRunnable()
+			{
+				@Override
+				public void run()
+				{ sweep(); }
+			};
+			sweepTask.runTaskTimer(AutoReferee.getInstance(), SWEEP_INTERVAL, SWEEP_INTERVAL);
+		}
+		return a;
+	}
+
+	/**
+	 * Sets the player responsible for an entity, such as primed TNT or a fireball.
+	 *
+	 * @param entity entity
+	 * @param owner player responsible for the entity
+	 */
+	public void setOwner(Entity entity, AutoRefPlayer owner)
+	{
+		Attribution a = entities.get(entity.getEntityId());
+		if (a != null) { a.owner = owner; return; }
+
+		a = create(owner); a.entity = entity;
+		entities.put(entity.getEntityId(), a);
+	}
+
+	/**
+	 * Records where a projectile was fired from, and by whom.
+	 *
+	 * @param entity projectile
+	 * @param owner player who fired the projectile, possibly null
+	 * @param origin location the projectile was fired from
+	 */
+	public void setOrigin(Entity entity, AutoRefPlayer owner, Location origin)
+	{
+		Attribution a = create(owner); a.entity = entity;
+		a.x = origin.getX(); a.y = origin.getY(); a.z = origin.getZ();
+		a.hasOrigin = true;
+		entities.put(entity.getEntityId(), a);
+	}
+
+	/**
+	 * Gets the player responsible for an entity.
+	 *
+	 * @param entity entity
+	 * @return player responsible, or null if unknown
+	 */
+	public AutoRefPlayer getOwner(Entity entity)
+	{
+		Attribution a = entities.get(entity.getEntityId());
+		return a == null ? null : a.owner;
+	}
+
+	/**
+	 * Gets the location a projectile was fired from.
+	 *
+	 * @param entity projectile
+	 * @return location the projectile was fired from, or null if unknown
+	 */
+	public Location getOrigin(Entity entity)
+	{
+		Attribution a = entities.get(entity.getEntityId());
+		if (a == null || !a.hasOrigin) return null;
+		return new Location(match.getWorld(), a.x, a.y, a.z);
+	}
+
+	/**
+	 * Stops tracking an entity, such as when it explodes.
+	 *
+	 * @param entity entity
+	 * @return player who was responsible for the entity, or null if unknown
+	 */
+	public AutoRefPlayer clear(Entity entity)
+	{
+		Attribution a = entities.remove(entity.getEntityId());
+		return a == null ? null : a.owner;
+	}
+
+	/**
+	 * Records the player responsible for a TNT block ignited by an explosion.
+	 *
+	 * @param block TNT block
+	 * @param owner player responsible for the explosion
+	 */
+	public void propagate(Block block, AutoRefPlayer owner)
+	{ propagation.put(blockKey(block), create(owner)); }
+
+	/**
+	 * Gets and forgets the player responsible for igniting the TNT at a block.
+	 *
+	 * @param block block the primed TNT is in
+	 * @return player responsible, or null if this TNT was not ignited by an explosion
+	 */
+	public AutoRefPlayer takePropagation(Block block)
+	{
+		Attribution a = propagation.remove(blockKey(block));
+		return a == null ? null : a.owner;
+	}
+
+	/**
+	 * Gets the number of entities and blocks being tracked.
+	 *
+	 * @return number of entries
+	 */
+	public int size()
+	{ return entities.size() + propagation.size(); }
+
+	/**
+	 * Forgets everything, and stops sweeping for expired entries.
+	 */
+	public void clear()
+	{
+		entities.clear();
+		propagation.clear();
+		if (sweepTask != null) { sweepTask.cancel(); sweepTask = null; }
+	}
+
+	private void sweep()
+	{
+		ticks += SWEEP_INTERVAL;
+
+		for (Iterator<Attribution> iter = entities.values().iterator(); iter.hasNext(); )
+		{
+			Attribution a = iter.next();
+			if (ticks - a.tick > MAX_AGE || !a.entity.isValid()) iter.remove();
+		}
+
+		for (Iterator<Attribution> iter = propagation.values().iterator(); iter.hasNext(); )
+			if (ticks - iter.next().tick > MAX_AGE) iter.remove();
+
+		// nothing left to expire, the next entry will start sweeping again
+		if (size() == 0) { sweepTask.cancel(); sweepTask = null; }
+	}
+}
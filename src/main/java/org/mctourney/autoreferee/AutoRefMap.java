@@ -1,10 +1,10 @@
 package org.mctourney.autoreferee;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.reflect.Type;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Date;
 import java.util.Enumeration;
@@ -12,6 +12,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -28,7 +30,6 @@ import org.mctourney.autoreferee.event.match.MatchLoadEvent;
 import org.mctourney.autoreferee.util.NullChunkGenerator;
 import org.mctourney.autoreferee.util.QueryUtil;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 
@@ -39,6 +40,9 @@ import org.jdom2.input.SAXBuilder;
 
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
@@ -49,8 +53,6 @@ import com.google.gson.reflect.TypeToken;
  */
 public class AutoRefMap implements Comparable<AutoRefMap>
 {
-	private static final File DOWNLOADING = new File("");
-
 	private static Set<AutoRefMap> _cachedRemoteMaps = null;
 
 	private static final long REMOTE_MAP_CACHE_LENGTH = 5000L;
@@ -59,16 +61,19 @@ public class AutoRefMap implements Comparable<AutoRefMap>
 	private String name;
 	private String version;
 
-	private File zip = null;
+	private volatile File zip = null;
 
 	private String filename;
 	private String md5sum;
 
 	protected AutoRefMap(String name, String version, File zip)
 		throws IOException
+	{ this(name, version, zip, MapCatalog.md5(zip)); }
+
+	AutoRefMap(String name, String version, File zip, String md5sum)
 	{
-		this.name = name; this.version = version; this.zip = zip;
-		this.md5sum = DigestUtils.md5Hex(new FileInputStream(zip));
+		this.name = name; this.version = version;
+		this.zip = zip; this.md5sum = md5sum;
 	}
 
 	protected AutoRefMap(String name, String version, String filename, String md5sum)
@@ -101,6 +106,14 @@ public class AutoRefMap implements Comparable<AutoRefMap>
 	public String getVersionString()
 	{ return name + " v" + version; }
 
+	/**
+	 * Gets the md5 checksum of the map zip, which identifies this version of the map.
+	 *
+	 * @return hex md5 checksum, or null if unknown
+	 */
+	public String getChecksum()
+	{ return md5sum; }
+
 	/**
 	 * Gets whether the map has been installed.
 	 *
@@ -117,37 +130,52 @@ public class AutoRefMap implements Comparable<AutoRefMap>
 	 */
 	public File getZip() throws IOException
 	{
-		boolean interrupted = false;
-		// if the map is already downloading, just be patient
-		while (this.zip == DOWNLOADING)
-		{
-			interrupted = Thread.interrupted();
-			try { Thread.sleep(500); }
-			catch (InterruptedException e) { interrupted = true; }
-		}
-
-		if (interrupted)
-			Thread.currentThread().interrupt();
-
-		if (!isInstalled()) download();
+		if (!isInstalled()) this.zip = await(download(null));
 		return this.zip;
 	}
 
-	private void download() throws IOException
+	/**
+	 * Downloads the map in the background, if it is not already installed. If the map
+	 * is already being downloaded, the existing download is returned.
+	 *
+	 * @param sender user receiving progress updates, possibly null
+	 * @return future for the root zip of this map
+	 */
+	public ListenableFuture<File> download(CommandSender sender)
 	{
-		// mark the file as downloading
-		this.zip = AutoRefMap.DOWNLOADING;
+		if (isInstalled()) return Futures.immediateFuture(this.zip);
 
 		String bparts[] = filename.split("/"), basename = bparts[bparts.length - 1];
 		File zip = new File(AutoRefMap.getMapLibrary(), basename);
-		FileUtils.copyURLToFile(new URL(AutoRefMatch.getMapRepo() + filename), zip);
 
-		// if the md5s match, return the zip
-		String md5comp = DigestUtils.md5Hex(new FileInputStream(zip));
-		if (md5comp.equalsIgnoreCase(md5sum)) { this.zip = zip; return; }
+		URL url;
+		try { url = new URL(AutoRefMatch.getMapRepo() + filename); }
+		catch (MalformedURLException e) { return Futures.immediateFailedFuture(e); }
 
-		// if the md5sum did not match, quit here
-		zip.delete(); throw new IOException("MD5 Mismatch: " + md5comp + " != " + md5sum);
+		ListenableFuture<File> future = MapDownloadManager.get()
+			.download(url, zip, md5sum, MapDownloadManager.progressFor(sender));
+		Futures.addCallback(future, new FutureCallback<File>()
+		{
+			public void onSuccess(File zip) { AutoRefMap.this.zip = zip; refreshMapLibrary(); }
+			public void onFailure(Throwable t) {  }
+		});
+		return future;
+	}
+
+	// waits for a download, rethrowing its failure
+	private static File await(Future<File> future) throws IOException
+	{
+		try { return future.get(); }
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for download");
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IOException(e.getCause().toString());
+		}
 	}
 
 	/**
@@ -210,17 +238,22 @@ public class AutoRefMap implements Comparable<AutoRefMap>
 	 */
 	public static AutoRefMatch createMatch(AutoRefMap map, String world) throws IOException
 	{
-		World w = createMatchWorld(map, world);
+		World w = createMatchWorld(prepareMatchWorld(map, world));
 		return AutoReferee.getInstance().getMatch(w).temporary();
 	}
 
-	private static World createMatchWorld(AutoRefMap map, String world) throws IOException
+	// copies the map files into a new world folder, safe to call off the main thread
+	private static String prepareMatchWorld(AutoRefMap map, String world) throws IOException
 	{
 		if (world == null)
 			world = AutoReferee.WORLD_PREFIX + Long.toHexString(new Date().getTime());
 
-		// copy the files over and return the loaded world
 		map.unpack(new File(world));
+		return world;
+	}
+
+	private static World createMatchWorld(String world)
+	{
 		return AutoReferee.getInstance().getServer().createWorld(
 			WorldCreator.name(world).generateStructures(false)
 				.generator(new NullChunkGenerator()));
@@ -289,10 +322,45 @@ public class AutoRefMap implements Comparable<AutoRefMap>
 		return m;
 	}
 
+	/**
+	 * Gets folder containing cached map images, generating folder if necessary.
+	 *
+	 * @return map image cache folder
+	 */
+	public static File getMapImageCache()
+	{
+		File m = new File(getMapLibrary(), ".images");
+		if (!m.exists()) m.mkdir();
+		return m;
+	}
+
+	private static MapCatalog catalog = null;
+
+	private static synchronized MapCatalog getCatalog()
+	{
+		if (catalog == null) catalog = new MapCatalog(getMapLibrary());
+		return catalog;
+	}
+
+	/**
+	 * Starts watching the map library for changes in the background. Lookups are
+	 * answered from the catalog, and never scan the library themselves.
+	 */
+	public static void watchMapLibrary()
+	{ getCatalog().startWatching(); }
+
+	/**
+	 * Checks the map library for changes now, rather than waiting for the watcher.
+	 * This reads the library from disk, so avoid calling it from the main thread.
+	 */
+	public static void refreshMapLibrary()
+	{ getCatalog().refresh(); }
+
 	private static final int MAX_NAME_DISTANCE = 5;
 
 	/**
-	 * Gets map object associated with given map name.
+	 * Gets map object associated with given map name. Installed maps are preferred,
+	 * and exact name matches are checked before any fuzzy matching.
 	 *
 	 * @param name name of map
 	 * @return map object associated with the name
@@ -307,6 +375,13 @@ public class AutoRefMap implements Comparable<AutoRefMap>
 		File mapLibrary = AutoRefMap.getMapLibrary();
 		if (!mapLibrary.exists()) return null;
 
+		// an installed map with this exact name doesn't require a remote listing
+		AutoRefMap installed = getCatalog().getMap(name);
+		if (installed != null) return installed;
+
+		for (AutoRefMap map : getRemoteMaps())
+			if (name.equalsIgnoreCase(AutoRefMatch.normalizeMapName(map.name))) return map;
+
 		AutoRefMap bmap = null; int ldist = MAX_NAME_DISTANCE;
 		for (AutoRefMap map : getAvailableMaps())
 		{
@@ -331,7 +406,8 @@ public class AutoRefMap implements Comparable<AutoRefMap>
 		String filename = url.substring(url.lastIndexOf('/') + 1, url.length());
 		File zip = new File(AutoRefMap.getMapLibrary(), filename);
 
-		FileUtils.copyURLToFile(new URL(url), zip);
+		await(MapDownloadManager.get().download(new URL(url), zip, null, null));
+		refreshMapLibrary();
 		return AutoRefMap.getMapInfo(zip);
 	}
 
@@ -385,8 +461,10 @@ public class AutoRefMap implements Comparable<AutoRefMap>
 			catch (IOException e) { e.printStackTrace(); }
 			catch (JDOMException e) { e.printStackTrace(); }
 
-			// check for updates on installed maps
-			for (AutoRefMap map : getInstalledMaps()) try
+			// start downloading all updates at once, the download manager limits concurrency
+			Map<AutoRefMap, AutoRefMap> updates = Maps.newHashMap();
+			Map<AutoRefMap, ListenableFuture<File>> downloads = Maps.newHashMap();
+			for (AutoRefMap map : getInstalledMaps())
 			{
 				// get the remote version and check if there is an update
 				AutoRefMap rmap; if ((rmap = remote.get(map.name)) != null)
@@ -396,19 +474,32 @@ public class AutoRefMap implements Comparable<AutoRefMap>
 					{
 						AutoReferee.getInstance().sendMessageSync(sender, String.format(
 							"UPDATING %s (%s -> %s)...", rmap.name, map.version, rmap.version));
-						if (rmap.getZip() == null) AutoReferee.getInstance()
-							.sendMessageSync(sender, "Update " + ChatColor.RED + "FAILED");
-						else
-						{
-							AutoReferee.getInstance().sendMessageSync(sender,
-								"Update " + ChatColor.GREEN + "SUCCESS: " +
-									ChatColor.RESET + rmap.getVersionString());
-							FileUtils.deleteQuietly(map.getZip());
-						}
+						updates.put(map, rmap);
+						downloads.put(map, rmap.download(sender));
 					}
 				}
 			}
-			catch (IOException e) { e.printStackTrace(); }
+
+			for (Map.Entry<AutoRefMap, AutoRefMap> update : updates.entrySet())
+			{
+				AutoRefMap map = update.getKey(), rmap = update.getValue();
+				try
+				{
+					File zip = await(downloads.get(map));
+					AutoReferee.getInstance().sendMessageSync(sender,
+						"Update " + ChatColor.GREEN + "SUCCESS: " +
+							ChatColor.RESET + rmap.getVersionString());
+
+					// the new version may have been saved over the old one
+					if (!zip.equals(map.zip)) FileUtils.deleteQuietly(map.zip);
+				}
+				catch (IOException e)
+				{
+					AutoReferee.getInstance().sendMessageSync(sender, "Update " + ChatColor.RED
+						+ "FAILED: " + ChatColor.RESET + rmap.getVersionString());
+					e.printStackTrace();
+				}
+			}
 		}
 	}
 
@@ -492,18 +583,7 @@ public class AutoRefMap implements Comparable<AutoRefMap>
 	 * @return set of all maps available to load immediately
 	 */
 	public static Set<AutoRefMap> getInstalledMaps()
-	{
-		Set<AutoRefMap> maps = Sets.newHashSet();
-
-		// look through the zip files for what's already installed
-		for (File zip : AutoRefMap.getMapLibrary().listFiles())
-		{
-			AutoRefMap mapInfo = getMapInfo(zip);
-			if (mapInfo != null) maps.add(mapInfo);
-		}
-
-		return maps;
-	}
+	{ return Sets.newHashSet(getCatalog().getMaps()); }
 
 	public static Element getConfigFileData(File zip) throws IOException, JDOMException
 	{
@@ -543,6 +623,7 @@ public class AutoRefMap implements Comparable<AutoRefMap>
 		try { worldConfig = getConfigFileData(zip); }
 		catch (IOException e) { e.printStackTrace(); return null; }
 		catch (JDOMException e) { e.printStackTrace(); return null; }
+		if (worldConfig == null) return null;
 
 		String mapName = "??", version = "1.0";
 		Element meta = worldConfig.getChild("meta");
@@ -558,28 +639,10 @@ public class AutoRefMap implements Comparable<AutoRefMap>
 
 	private File unpack(File dest) throws IOException
 	{
-		ZipFile zfile = new ZipFile(this.getZip());
-		Enumeration<? extends ZipEntry> entries = zfile.entries();
-
-		File f, basedir = null;
-		File tmp = FileUtils.getTempDirectory();
-		while (entries.hasMoreElements())
-		{
-			ZipEntry entry = entries.nextElement();
-			f = new File(tmp, entry.getName());
-			if (f.exists()) FileUtils.deleteQuietly(f);
-
-			if (entry.isDirectory()) FileUtils.forceMkdir(f);
-			else FileUtils.copyInputStreamToFile(zfile.getInputStream(entry), f);
-
-			if (entry.isDirectory() && (basedir == null ||
-				basedir.getName().startsWith(f.getName()))) basedir = f;
-		}
-
-		zfile.close();
-		if (dest.exists()) FileUtils.deleteDirectory(dest);
-		FileUtils.moveDirectory(basedir, dest);
+		File zip = this.getZip();
+		if (md5sum == null) md5sum = MapCatalog.md5(zip);
 
+		MapTemplateCache.cloneTemplate(zip, md5sum, dest);
 		return dest;
 	}
 
@@ -595,8 +658,11 @@ public class AutoRefMap implements Comparable<AutoRefMap>
 		{
 			try
 			{
-				if (!map.isInstalled()) map.download();
-				new MapLoader(sender, map, custom).runTask(AutoReferee.getInstance());
+				if (!map.isInstalled()) await(map.download(sender));
+
+				// all file work happens here, only the world is loaded on the main thread
+				String world = prepareMatchWorld(map, custom);
+				new MapLoader(sender, world).runTask(AutoReferee.getInstance());
 			}
 			catch (IOException e) { e.printStackTrace(); }
 		}
@@ -647,18 +713,16 @@ public class AutoRefMap implements Comparable<AutoRefMap>
 	private static class MapLoader extends BukkitRunnable
 	{
 		private CommandSender sender;
-		private AutoRefMap map;
-		private String custom;
+		private String world;
 
-		public MapLoader(CommandSender sender, AutoRefMap map, String custom)
-		{ this.sender = sender; this.map = map; this.custom = custom; }
+		public MapLoader(CommandSender sender, String world)
+		{ this.sender = sender; this.world = world; }
 
 		@Override
 		public void run()
 		{
-			AutoRefMatch match;
-			try { match = AutoRefMap.createMatch(this.map, this.custom); }
-			catch (IOException e) { e.printStackTrace(); return; }
+			World w = createMatchWorld(this.world);
+			AutoRefMatch match = AutoReferee.getInstance().getMatch(w).temporary();
 
 			MatchLoadEvent event = new MatchLoadEvent(match);
 			AutoReferee.callEvent(event);
@@ -14,14 +14,14 @@ import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
-import javax.imageio.ImageIO;
-
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.MapDifference;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -83,6 +83,7 @@ import org.mctourney.autoreferee.event.player.PlayerMatchJoinEvent;
 import org.mctourney.autoreferee.event.player.PlayerMatchLeaveEvent;
 import org.mctourney.autoreferee.event.player.PlayerTeamJoinEvent;
 import org.mctourney.autoreferee.goals.AutoRefGoal;
+import org.mctourney.autoreferee.goals.BlockGoal;
 import org.mctourney.autoreferee.goals.TimeGoal;
 import org.mctourney.autoreferee.goals.scoreboard.AutoRefObjective;
 import org.mctourney.autoreferee.listeners.GoalsInventorySnapshot;
@@ -90,14 +91,17 @@ import org.mctourney.autoreferee.listeners.SpectatorListener;
 import org.mctourney.autoreferee.listeners.ZoneListener;
 import org.mctourney.autoreferee.regions.AutoRefRegion;
 import org.mctourney.autoreferee.regions.CuboidRegion;
+import org.mctourney.autoreferee.regions.RegionIndex;
 import org.mctourney.autoreferee.util.ArmorPoints;
 import org.mctourney.autoreferee.util.BlockData;
 import org.mctourney.autoreferee.util.BookUtil;
+import org.mctourney.autoreferee.util.EventExporter;
 import org.mctourney.autoreferee.util.LocationUtil;
 import org.mctourney.autoreferee.util.MapImageGenerator;
 import org.mctourney.autoreferee.util.Metadatable;
 import org.mctourney.autoreferee.util.PlayerKit;
 import org.mctourney.autoreferee.util.PlayerUtil;
+import org.mctourney.autoreferee.util.ProfiledRunnable;
 import org.mctourney.autoreferee.util.QueryUtil;
 import org.mctourney.autoreferee.util.ReportGenerator;
 import org.mctourney.autoreferee.util.SportBukkitUtil;
@@ -352,7 +356,7 @@ public class AutoRefMatch implements Metadatable
 	 * @param status new match status
 	 */
 	public void setCurrentState(MatchStatus status)
-	{ this.currentState = status; this.setupSpectators(); }
+	{ this.currentState = status; this.invalidateRoles(); this.setupSpectators(); }
 
 	// custom scoreboard
 	protected final Scoreboard scoreboard;
@@ -421,7 +425,7 @@ public class AutoRefMatch implements Metadatable
 	{ return startRegions; }
 
 	public void addStartRegion(AutoRefRegion reg)
-	{ this.startRegions.add(reg); }
+	{ this.startRegions.add(reg); this.invalidateLaneFields(); }
 
 	private Set<AutoRefRegion.Flag> startRegionFlags = Sets.newHashSet
 	(	AutoRefRegion.Flag.NO_BUILD
@@ -683,8 +687,42 @@ public class AutoRefMatch implements Metadatable
 	public int getInexactRange()
 	{ return inexactRange; }
 
-	// transcript of every event in the match
-	protected List<TranscriptEvent> transcript;
+	// transcript of every event in the match, journaled to the world folder
+	protected TranscriptJournal transcript;
+	private TranscriptDispatcher transcriptDispatcher = new TranscriptDispatcher(this);
+
+	// batched, delta-compressed messages for referees with newer clients
+	private RefereeChannel refereeChannel = new RefereeChannel(this);
+
+	/**
+	 * Gets the version 2 referee channel for this match.
+	 *
+	 * @return referee channel
+	 */
+	public RefereeChannel getRefereeChannel()
+	{ return refereeChannel; }
+
+	// spectators close to players, updated as everyone moves
+	private SpectatorVisibility spectatorVisibility = new SpectatorVisibility(this);
+
+	/**
+	 * Gets the spectator visibility tracker for this match.
+	 *
+	 * @return spectator visibility tracker
+	 */
+	public SpectatorVisibility getSpectatorVisibility()
+	{ return spectatorVisibility; }
+
+	// owners of tnt and projectiles, and where projectiles were fired from
+	private AttributionTracker attributionTracker = new AttributionTracker(this);
+
+	/**
+	 * Gets the tracker for who is responsible for tnt and projectiles in this match.
+	 *
+	 * @return attribution tracker
+	 */
+	public AttributionTracker getAttributionTracker()
+	{ return attributionTracker; }
 
 	private boolean refereeReady = false;
 
@@ -704,14 +742,50 @@ public class AutoRefMatch implements Metadatable
 
 	private ReportGenerator matchReportGenerator = new ReportGenerator();
 
-	public void saveMapImage()
+	private ListenableFuture<File> mapImageFuture = null;
+
+	/**
+	 * Gets the location of the saved map image for this match.
+	 *
+	 * @return map image file
+	 */
+	public File getMapImageFile()
+	{ return new File(getWorld().getWorldFolder(), "map.png"); }
+
+	/**
+	 * Saves an image of the map in the background. Images are cached in the map library
+	 * by map version, so an unchanged map is only ever rendered once.
+	 *
+	 * @return future for the saved image file
+	 */
+	public synchronized ListenableFuture<File> saveMapImage()
 	{
-		try
+		// if the image is already saved (or being saved), don't start over
+		if (mapImageFuture != null) return mapImageFuture;
+
+		CuboidRegion cube = getMapCuboid();
+		if (cube == null) return Futures.immediateFailedFuture(
+			new IOException("No start regions defined."));
+
+		Location min = cube.getMinimumPoint(),
+			max = cube.getMaximumPoint();
+
+		File cached = new File(AutoRefMap.getMapImageCache(), String.format("%s@%d,%d,%d,%d.png",
+			getVersionString(), min.getBlockX(), min.getBlockZ(), max.getBlockX(), max.getBlockZ()));
+		final ListenableFuture<File> future = MapImageGenerator.renderCached(getWorld(), min.getBlockX(),
+			max.getBlockX(), min.getBlockZ(), max.getBlockZ(), cached, getMapImageFile());
+
+		// if the render fails, allow the next call to try again
+		Futures.addCallback(future, new FutureCallback<File>()
 		{
-			RenderedImage mapImage = getMapImage();
-			ImageIO.write(mapImage, "png", new File(getWorld().getWorldFolder(), "map.png"));
-		}
-		catch (IOException e) { e.printStackTrace(); }
+			public void onSuccess(File file) {  }
+			public void onFailure(Throwable t)
+			{
+				synchronized (AutoRefMatch.this)
+				{ if (mapImageFuture == future) mapImageFuture = null; }
+			}
+		});
+		return mapImageFuture = future;
 	}
 
 	public RenderedImage getMapImage() throws IOException
@@ -845,10 +919,13 @@ public class AutoRefMatch implements Metadatable
 
 				case FIREBALL:
 				case SMALL_FIREBALL:
-					breakerName = "Fireball"; break;
+					AutoRefPlayer fireballOwner = attributionTracker.getOwner(ent);
+					if (fireballOwner == null) breakerName = "Fireball";
+					else breakerName = String.format("%s's Fireball", fireballOwner.getDisplayName());
+					break;
 
 				case PRIMED_TNT:
-					AutoRefPlayer tntOwner = plugin.getTNTOwner(ent);
+					AutoRefPlayer tntOwner = attributionTracker.getOwner(ent);
 					if (tntOwner == null) breakerName = "TNT";
 					else breakerName = String.format("%s's TNT", tntOwner.getDisplayName());
 					break;
@@ -900,14 +977,19 @@ public class AutoRefMatch implements Metadatable
 		}
 	}
 
-	private class PlayerCountTask extends BukkitRunnable
+	private class PlayerCountTask extends ProfiledRunnable
 	{
 		private long lastOccupiedTime = 0;
 
 		public PlayerCountTask()
 		{ lastOccupiedTime = ManagementFactory.getRuntimeMXBean().getUptime(); }
 
-		public void run()
+		@Override
+		protected World getProfiledWorld()
+		{ return getWorld(); }
+
+		@Override
+		protected void tick()
 		{
 			long tick = ManagementFactory.getRuntimeMXBean().getUptime();
 
@@ -937,6 +1019,10 @@ public class AutoRefMatch implements Metadatable
 		this.playersBecomeSpectators = AutoReferee.getInstance().getConfig()
 			.getBoolean("players-become-spectators", true);
 
+		// should team lanes be precomputed?
+		this.useLaneFields = AutoReferee.getInstance().getConfig()
+			.getBoolean("precompute-lanes", true);
+
 		// setup custom scoreboard
 		scoreboard = Bukkit.getScoreboardManager().getNewScoreboard();
 		 infoboard = Bukkit.getScoreboardManager().getNewScoreboard();
@@ -978,7 +1064,7 @@ public class AutoRefMatch implements Metadatable
 		for (Player pl : primaryWorld.getPlayers()) sendMatchInfo(pl);
 
 		// brand new match transcript
-		transcript = Lists.newLinkedList();
+		transcript = new TranscriptJournal(this);
 
 		// fix vanish
 		this.setupSpectators();
@@ -988,6 +1074,10 @@ public class AutoRefMatch implements Metadatable
 
 		// startup the player count timer (for automatic unloading)
 		countTask.runTaskTimer(AutoReferee.getInstance(), 5L, 60*20L);
+
+		// periodically re-check permissions for cached player roles
+		roleSweepTask = new RoleSweepTask();
+		roleSweepTask.runTaskTimer(AutoReferee.getInstance(), ROLE_SWEEP_PERIOD, ROLE_SWEEP_PERIOD);
 	}
 
 	/**
@@ -1014,18 +1104,123 @@ public class AutoRefMatch implements Metadatable
 		return players;
 	}
 
+	private static final int PERM_REFEREE  = 1 << 0;
+	private static final int PERM_STREAMER = 1 << 1;
+
+	private static final int ROLE_REFEREE   = 1 << 0;
+	private static final int ROLE_STREAMER  = 1 << 1;
+	private static final int ROLE_SPECTATOR = 1 << 2;
+
+	// permissions of players in this world, re-checked periodically by the role sweep
+	private Map<String, Integer> permissionCache = Maps.newConcurrentMap();
+
+	private int getPermissions(Player player)
+	{
+		Integer perms = permissionCache.get(player.getName());
+		if (perms == null) permissionCache.put(player.getName(), perms = checkPermissions(player));
+		return perms;
+	}
+
+	private static int checkPermissions(Player player)
+	{
+		int perms = 0;
+		if (player.hasPermission("autoreferee.referee")) perms |= PERM_REFEREE;
+		if (player.hasPermission("autoreferee.streamer")) perms |= PERM_STREAMER;
+		return perms;
+	}
+
+	// snapshot of the roles of everyone in this world, rebuilt when invalidated
+	private class RoleCache
+	{
+		Map<String, Integer> roles = Maps.newHashMap();
+
+		Set<Player> referees = Sets.newHashSet();
+		Set<Player> nonStreamerReferees = Sets.newHashSet();
+		Set<Player> streamers = Sets.newHashSet();
+		Set<Player> spectators = Sets.newHashSet();
+
+		RoleCache()
+		{
+			Set<String> eps = getExpectedPlayers();
+			boolean beforeMatch = getCurrentState().isBeforeMatch();
+
+			for (Player p : primaryWorld.getPlayers())
+			{
+				boolean player = isPlayer(p), expected = eps.contains(p.getName().toLowerCase());
+				boolean referee = !player && !expected && 0 != (getPermissions(p) & PERM_REFEREE);
+				boolean spectator = referee || (!beforeMatch && !player);
+				boolean streamer = !player && !expected && spectator &&
+					getSpectatorObject(p.getName()).isStreamer();
+
+				int role = 0;
+				if (referee) { role |= ROLE_REFEREE; referees.add(p); }
+				if (streamer) { role |= ROLE_STREAMER; streamers.add(p); }
+				if (spectator) role |= ROLE_SPECTATOR;
+				roles.put(p.getName(), role);
+
+				if (referee && !streamer) nonStreamerReferees.add(p);
+				if (!player) spectators.add(p);
+			}
+
+			referees = Collections.unmodifiableSet(referees);
+			nonStreamerReferees = Collections.unmodifiableSet(nonStreamerReferees);
+			streamers = Collections.unmodifiableSet(streamers);
+			spectators = Collections.unmodifiableSet(spectators);
+		}
+	}
+
+	private volatile RoleCache roleCache = null;
+
+	private RoleCache getRoleCache()
+	{
+		RoleCache cache = roleCache;
+		if (cache == null) roleCache = cache = new RoleCache();
+		return cache;
+	}
+
+	/**
+	 * Discards cached player roles. Should be called whenever a player enters or leaves
+	 * this world, or when anything affecting a player's role changes.
+	 */
+	public void invalidateRoles()
+	{ roleCache = null; }
+
+	private class RoleSweepTask extends BukkitRunnable
+	{
+		public void run()
+		{
+			boolean changed = false;
+			Set<String> present = Sets.newHashSet();
+
+			// re-check permissions for everyone in the world
+			for (Player p : primaryWorld.getPlayers())
+			{
+				present.add(p.getName());
+				int perms = checkPermissions(p);
+				Integer prev = permissionCache.put(p.getName(), perms);
+				if (prev == null || prev != perms) changed = true;
+			}
+
+			// forget anyone who is no longer here
+			if (permissionCache.keySet().retainAll(present)) changed = true;
+
+			RoleCache cache = roleCache;
+			if (changed || (cache != null && !cache.roles.keySet().equals(present))) invalidateRoles();
+		}
+	}
+
+	// how often to re-check permissions of players in this world
+	private static final long ROLE_SWEEP_PERIOD = 5 * 20L;
+
+	RoleSweepTask roleSweepTask = null;
+
 	/**
 	 * Gets all match spectators (spectators, referees, and streamers).
 	 *
 	 * @return collection of spectators
 	 */
 	public Set<Player> getSpectators()
-	{
-		Set<Player> specs = Sets.newHashSet();
-		for (Player p : primaryWorld.getPlayers())
-			if (!isPlayer(p)) specs.add(p);
-		return specs;
-	}
+	{ return getRoleCache().spectators; }
 
 	/**
 	 * Gets all non-streamer referees present in this match.
@@ -1043,10 +1238,8 @@ public class AutoRefMatch implements Metadatable
 	 */
 	public Set<Player> getReferees(boolean excludeStreamers)
 	{
-		Set<Player> refs = Sets.newHashSet();
-		for (Player p : primaryWorld.getPlayers())
-			if (isReferee(p) && !(excludeStreamers && isStreamer(p))) refs.add(p);
-		return refs;
+		RoleCache cache = getRoleCache();
+		return excludeStreamers ? cache.nonStreamerReferees : cache.referees;
 	}
 
 	/**
@@ -1055,12 +1248,7 @@ public class AutoRefMatch implements Metadatable
 	 * @return collection of streamers
 	 */
 	public Set<Player> getStreamers()
-	{
-		Set<Player> streamers = Sets.newHashSet();
-		for (Player p : primaryWorld.getPlayers())
-			if (isStreamer(p)) streamers.add(p);
-		return streamers;
-	}
+	{ return getRoleCache().streamers; }
 
 	/**
 	 * Checks if the specified player is a referee for this match.
@@ -1069,7 +1257,12 @@ public class AutoRefMatch implements Metadatable
 	 */
 	public boolean isReferee(Player player)
 	{
-		if (isPlayer(player) || getExpectedPlayers().contains(player.getName())) return false;
+		Integer role = player.getWorld() != primaryWorld ? null
+			: getRoleCache().roles.get(player.getName());
+		if (role != null) return 0 != (role & ROLE_REFEREE);
+
+		// player isn't in this world, so check directly
+		if (isPlayer(player) || isPlayerExpected(player)) return false;
 		return player.hasPermission("autoreferee.referee");
 	}
 
@@ -1080,7 +1273,12 @@ public class AutoRefMatch implements Metadatable
 	 */
 	public boolean isStreamer(Player player)
 	{
-		if (isPlayer(player) || getExpectedPlayers().contains(player.getName())) return false;
+		Integer role = player.getWorld() != primaryWorld ? null
+			: getRoleCache().roles.get(player.getName());
+		if (role != null) return 0 != (role & ROLE_STREAMER);
+
+		// player isn't in this world, so check directly
+		if (isPlayer(player) || isPlayerExpected(player)) return false;
 		return isSpectator(player) && getSpectator(player).isStreamer();
 	}
 
@@ -1091,6 +1289,9 @@ public class AutoRefMatch implements Metadatable
 	 */
 	public boolean isSpectator(Player player)
 	{
+		Integer role = player.getWorld() != primaryWorld ? null
+			: getRoleCache().roles.get(player.getName());
+		if (role != null) return 0 != (role & ROLE_SPECTATOR);
 		return isReferee(player) || !getCurrentState().isBeforeMatch() && !isPlayer(player);
 	}
 
@@ -1099,8 +1300,11 @@ public class AutoRefMatch implements Metadatable
 	public AutoRefSpectator getSpectator(Player player)
 	{
 		if (!isSpectator(player)) return null;
-		String name = player.getName();
+		return getSpectatorObject(player.getName());
+	}
 
+	private AutoRefSpectator getSpectatorObject(String name)
+	{
 		AutoRefSpectator spectator = this.spectators.get(name);
 		if (spectator == null) this.spectators.put(name,
 			spectator = new AutoRefSpectator(name, this));
@@ -1129,9 +1333,9 @@ public class AutoRefMatch implements Metadatable
 		if (isPlayer(player)) return Role.PLAYER;
 		if (!player.isOnline()) return Role.NONE;
 
-		Player pl = player.getPlayer();
-		if (pl.hasPermission("autoreferee.streamer")) return Role.STREAMER;
-		if (pl.hasPermission("autoreferee.referee")) return Role.REFEREE;
+		int perms = getPermissions(player.getPlayer());
+		if (0 != (perms & PERM_STREAMER)) return Role.STREAMER;
+		if (0 != (perms & PERM_REFEREE)) return Role.REFEREE;
 		if (!getCurrentState().isBeforeMatch()) return Role.SPECTATOR;
 
 		return Role.NONE;
@@ -1153,10 +1357,32 @@ public class AutoRefMatch implements Metadatable
 
 	protected void loadWorldConfiguration()
 	{
+		// configuration object (located in world folder)
+		File f = worldConfigFile;
+		if (f.exists())
+		{
+			Element cached = null;
+
+			// configurations which have been loaded before are not parsed again
+			try { cached = WorldConfigStore.load(f); }
+			// parse it again below, salvaging whatever we can
+			catch (JDOMParseException ignored) {  }
+			catch (Exception e) { e.printStackTrace(); return; }
+
+			if (cached != null)
+			{
+				worldConfig = cached;
+				assert "map".equals(worldConfig.getName());
+				saveConfig = true;
+
+				applyWorldConfiguration();
+				return;
+			}
+		}
+
 		try
 		{
-			// file stream and configuration object (located in world folder)
-			File f = worldConfigFile;
+			// file stream (or the default configuration)
 			loadWorldConfiguration(f.exists() ? new FileInputStream(f)
 				: AutoReferee.getInstance().getResource("defaults/map.xml"));
 		}
@@ -1320,6 +1546,12 @@ public class AutoRefMatch implements Metadatable
 		}
 		catch (Exception e) { e.printStackTrace(); return; }
 
+		applyWorldConfiguration();
+	}
+
+	// sets up this match from the loaded configuration
+	private void applyWorldConfiguration()
+	{
 		loadScoreboardData();
 
 		this.gamemode = GameMode.SURVIVAL;
@@ -1378,6 +1610,7 @@ public class AutoRefMatch implements Metadatable
 
 		Element regElt = worldConfig.getChild("regions");
 		regions = Sets.newHashSet();
+		regionIndex = new RegionIndex();
 
 		for (Element reg : regElt.getChildren())
 			if (!this.addRegion(AutoRefRegion.fromElement(this, reg)))
@@ -1400,6 +1633,9 @@ public class AutoRefMatch implements Metadatable
 			this.toggleStartMech(getWorld().getBlockAt(mechloc), state);
 		}
 
+		// precompute lanes now, rather than on the first player movement
+		for (AutoRefTeam team : getTeams()) team.getLaneField();
+
 		// setup scoreboard for the teams (on next server tick)
 		setupScoreboardObjectives();
 	}
@@ -1607,18 +1843,17 @@ public class AutoRefMatch implements Metadatable
 			}
 		}
 
-		// save the configuration file back to the original filename
-		try
-		{
-			XMLOutputter xmlout = new XMLOutputter(Format.getPrettyFormat());
-			xmlout.output(worldConfig, new FileOutputStream(worldConfigFile));
-		}
-
-		// log errors, report which world did not save
-		catch (java.io.IOException e)
-		{ AutoReferee.log("Could not save world config: " + primaryWorld.getName()); }
+		// save a copy back to the original filename, in the background
+		WorldConfigStore.save(worldConfigFile, worldConfig.clone());
 	}
 
+	/**
+	 * Writes any configuration save still waiting to be written for this world,
+	 * without waiting for it to be written in the background.
+	 */
+	public void flushWorldConfiguration()
+	{ WorldConfigStore.flush(worldConfigFile); }
+
 	/**
 	 * Sends a referee plugin channel message to all referees, properly delimited.
 	 */
@@ -1626,16 +1861,10 @@ public class AutoRefMatch implements Metadatable
 	{
 		for (Player ref : getReferees(false)) messageReferee(ref, parts);
 
-		// if there is a URI set for a node server receiving match messages, send
-		if (AutoReferee.getInstance().getConfig().isSet("node-api-url")) try
-		{
-			String url = AutoReferee.getInstance().getConfig().getString("node-api-url");
-			QueryUtil.syncPutQuery(url, QueryUtil.prepareParams(ImmutableMap.of(
-					"msg", StringUtils.join(parts, SpectatorListener.DELIMITER),
-					"world", getWorld().getName()
-			)));
-		}
-		catch (IOException ignored) {}
+		// if there is a node server receiving match messages, queue it up to be sent
+		EventExporter exporter = AutoReferee.getInstance().getNodeExporter();
+		if (exporter != null) exporter.offer(getWorld().getName(),
+			StringUtils.join(parts, SpectatorListener.DELIMITER));
 	}
 
 	/**
@@ -1645,6 +1874,10 @@ public class AutoRefMatch implements Metadatable
 	 */
 	public static void messageReferee(Player ref, String ...parts)
 	{
+		// referees with newer clients get their messages batched up instead
+		AutoRefMatch match = AutoReferee.getInstance().getMatch(ref.getWorld());
+		if (match != null && match.refereeChannel.send(ref, parts)) return;
+
 		try
 		{
 			String msg = StringUtils.join(parts, SpectatorListener.DELIMITER);
@@ -1662,6 +1895,7 @@ public class AutoRefMatch implements Metadatable
 	 */
 	public void updateReferee(Player ref)
 	{
+		refereeChannel.startSnapshot(ref);
 		messageReferee(ref, "match", getWorld().getName(), "init");
 		messageReferee(ref, "match", getWorld().getName(), "map", getMapName());
 
@@ -1705,69 +1939,16 @@ public class AutoRefMatch implements Metadatable
 		messageReferee(ref, "player", apl.getName(), "cape", apl.getCape());
 	}
 
-	private class ItemElevatorDetectionTask extends BukkitRunnable
-	{
-		private static final long INTERVAL = 5L;
-		private static final double DISTANCE_THRESHOLD = 1.8;
-		private static final double YDELTA_THRESHOLD = 0.8;
-
-		private Map<UUID, Location> itemLocations = Maps.newHashMap();
-		private Map<UUID, Location> lastStoppedLocation = Maps.newHashMap();
-
-		@Override public void run()
-		{
-			for (Entity e : getWorld().getEntitiesByClasses(Item.class))
-			{
-				Item item = (Item) e;
-				UUID uuid = item.getUniqueId();
-
-				Location prev = itemLocations.get(uuid);
-				Location curr = e.getLocation();
-				Location stop = lastStoppedLocation.get(uuid);
-
-				if (prev == null) continue;
-				boolean pass = TeleportationUtil.isBlockPassable(curr.getBlock());
-
-				// if the item is moving upwards and is currently in a passable
-				double ydelta = curr.getY() - prev.getY();
-				if (ydelta > YDELTA_THRESHOLD && !pass && !elevatedItem.containsKey(uuid))
-					elevatedItem.put(uuid, false);
-
-				double dy = stop == null ? 0.0 : curr.getY() - stop.getY();
-				if (elevatedItem.containsKey(uuid) && dy >= DISTANCE_THRESHOLD)
-					elevatedItem.put(uuid, true);
-
-				if (ydelta < 0.001)
-				{
-					// record the last location it was stopped at
-					lastStoppedLocation.put(uuid, curr);
-
-					boolean atrest = !TeleportationUtil.isBlockPassable(curr.getBlock().getRelative(0, -1, 0));
-					if (elevatedItem.containsKey(uuid) && elevatedItem.get(uuid) && atrest)
-					{
-						// if the item didn't elevate high enough, don't worry about it
-						if (dy < DISTANCE_THRESHOLD) { elevatedItem.remove(uuid); continue; }
-						setLastNotificationLocation(curr);
-
-						String coords = LocationUtil.toBlockCoords(curr);
-						String msg = ChatColor.DARK_GRAY + String.format(
-							"Possible Item Elevator @ (%s) [y%+d] %s", coords, Math.round(dy),
-							new BlockData(item.getItemStack()).getDisplayName());
-
-						for (Player ref : getReferees()) ref.sendMessage(msg);
-						AutoReferee.log(msg);
-					}
-				}
-			}
+	// watches dropped items for item elevators while the match is running
+	protected ItemTracker itemTracker = null;
 
-			itemLocations.clear();
-			for (Entity e : getWorld().getEntitiesByClasses(Item.class))
-				itemLocations.put(e.getUniqueId(), e.getLocation());
-		}
-	}
-
-	public Map<UUID, Boolean> elevatedItem = Maps.newHashMap();
-	protected ItemElevatorDetectionTask itemElevatorDetectionTask = null;
+	/**
+	 * Gets the tracker watching dropped items for item elevators.
+	 *
+	 * @return item tracker, or null if items are not being tracked
+	 */
+	public ItemTracker getItemTracker()
+	{ return itemTracker; }
 
 	/**
 	 * Sends a message to all players in this match, including referees and streamers.
@@ -1873,6 +2054,7 @@ public class AutoRefMatch implements Metadatable
 		// save the world and configuration first, then archive
 		primaryWorld.save();
 		this.saveWorldConfiguration();
+		this.flushWorldConfiguration();
 
 		// make sure the folder exists first
 		File archiveFolder = new File(PACKAGING_DIRECTORY, this.getVersionString());
@@ -2005,9 +2187,12 @@ public class AutoRefMatch implements Metadatable
 
 		// for cleanup purposes, BEFORE we eject all of the players
 		this.messageReferees("world", getWorld().getName(), "destroy");
+		refereeChannel.flush();
+		transcriptDispatcher.flush();
 
 		// first, handle all the players
 		for (Player p : primaryWorld.getPlayers()) this.ejectPlayer(p);
+		if (transcript != null) transcript.close();
 
 		// if everyone has been moved out of this world, clean it up
 		if (primaryWorld.getPlayers().size() == 0)
@@ -2018,6 +2203,7 @@ public class AutoRefMatch implements Metadatable
 			{
 				plugin.clearMatch(this);
 				this.countTask.cancel();
+				this.roleSweepTask.cancel();
 
 				plugin.getServer().unloadWorld(primaryWorld, true);
 				if (!plugin.getConfig().getBoolean("save-worlds", false))
@@ -2035,7 +2221,7 @@ public class AutoRefMatch implements Metadatable
 	public boolean canCraft(BlockData blockdata)
 	{
 		for (BlockData nc : prohibitCraft)
-			if (nc.equals(blockdata)) return false;
+			if (nc.matches(blockdata)) return false;
 		return true;
 	}
 
@@ -2075,10 +2261,19 @@ public class AutoRefMatch implements Metadatable
 	}
 
 	private Set<AutoRefRegion> regions;
+	private RegionIndex regionIndex;
 
 	public Set<AutoRefRegion> getRegions()
 	{ return regions; }
 
+	/**
+	 * Gets the spatial index over all regions in this match.
+	 *
+	 * @return region index
+	 */
+	public RegionIndex getRegionIndex()
+	{ return regionIndex; }
+
 	@SuppressWarnings("unchecked")
 	public <T extends AutoRefRegion> Set<T> getRegions(Class<T> clazz)
 	{
@@ -2098,7 +2293,29 @@ public class AutoRefMatch implements Metadatable
 	}
 
 	public boolean addRegion(AutoRefRegion reg)
-	{ return reg != null && !regions.contains(reg) && regions.add(reg); }
+	{
+		if (reg == null || regions.contains(reg) || !regions.add(reg)) return false;
+		regionIndex.add(reg); invalidateLaneFields(); return true;
+	}
+
+	/**
+	 * Notifies the match that the shape of a region has been modified.
+	 */
+	public void updateRegion(AutoRefRegion reg)
+	{ regionIndex.update(reg); invalidateLaneFields(); }
+
+	protected boolean useLaneFields = true;
+
+	/**
+	 * Checks if team lanes should be precomputed for fast movement checks.
+	 *
+	 * @return true if lane fields are enabled, otherwise false
+	 */
+	public boolean useLaneFields()
+	{ return useLaneFields; }
+
+	private void invalidateLaneFields()
+	{ if (teams != null) for (AutoRefTeam team : teams) team.invalidateLaneField(); }
 
 	/**
 	 * A redstone mechanism necessary to start a match.
@@ -2283,6 +2500,9 @@ public class AutoRefMatch implements Metadatable
 		primaryWorld.setTime(startClock);
 		this.setStartTime(ManagementFactory.getRuntimeMXBean().getUptime());
 
+		// resync block goals with the world before the match begins
+		rescanBlockGoals();
+
 		addEvent(new TranscriptEvent(this, TranscriptEvent.EventType.MATCH_START, "Match began.", null));
 
 		// send referees the start event
@@ -2373,9 +2593,14 @@ public class AutoRefMatch implements Metadatable
 	// handle to the clock task
 	protected MatchClockTask clockTask;
 
-	protected class MatchClockTask extends BukkitRunnable
+	protected class MatchClockTask extends ProfiledRunnable
 	{
-		public void run()
+		@Override
+		protected World getProfiledWorld()
+		{ return getWorld(); }
+
+		@Override
+		protected void tick()
 		{
 			AutoRefMatch match = AutoRefMatch.this;
 
@@ -2420,10 +2645,15 @@ public class AutoRefMatch implements Metadatable
 	// either vanish or show the player `subj` from perspective of `view`
 	protected void setupVanish(Player view, Player subj)
 	{
-		if (isSpectator(subj) && getSpectator(subj).isInvisible()) view.hidePlayer(subj);
-		if (getVanishLevel(view) < getVanishLevel(subj) &&
-			this.getCurrentState().inProgress()) view.hidePlayer(subj);
-		else view.showPlayer(subj);
+		boolean hide = getVanishLevel(view) < getVanishLevel(subj) &&
+			this.getCurrentState().inProgress();
+
+		// only send changes, since every show or hide resends the player entity
+		if (hide == view.canSee(subj))
+		{
+			if (hide) view.hidePlayer(subj);
+			else view.showPlayer(subj);
+		}
 	}
 
 	/**
@@ -2596,9 +2826,9 @@ public class AutoRefMatch implements Metadatable
 		saveMapImage();
 
 		// TODO put this behind a config option
-		itemElevatorDetectionTask = new ItemElevatorDetectionTask();
-		itemElevatorDetectionTask.runTaskTimer(AutoReferee.getInstance(),
-			0L, ItemElevatorDetectionTask.INTERVAL);
+		if (itemTracker != null) itemTracker.cancel();
+		itemTracker = new ItemTracker(this);
+		itemTracker.start();
 	}
 
 	/**
@@ -2663,18 +2893,70 @@ public class AutoRefMatch implements Metadatable
 		if (ready) this.startMatch(MatchStartEvent.Reason.READY);
 	}
 
+	// set while a win condition check is waiting to run on the next tick
+	private boolean winConditionCheckPending = false;
+
+	// changes reported since the last check. some events fire before the block
+	// actually changes, so these are read again when the check runs
+	private List<Location> pendingGoalChanges = Lists.newArrayList();
+	private boolean pendingFullCheck = false;
+
 	/**
-	 * Checks if any team has satisfied the win conditions.
+	 * Schedules a check of all win conditions, rescanning every block goal. Multiple
+	 * requests in the same tick are coalesced into a single check on the next tick.
 	 */
 	public void checkWinConditions()
+	{ pendingFullCheck = true; scheduleWinConditionCheck(); }
+
+	/**
+	 * Schedules a check of win conditions after a block change at the given location.
+	 * Block goals only re-read the changed block, rather than rescanning their range.
+	 *
+	 * @param loc location of the change
+	 */
+	public void checkWinConditions(Location loc)
 	{
+		updateBlockGoals(loc); pendingGoalChanges.add(loc);
+		scheduleWinConditionCheck();
+	}
+
+	private void updateBlockGoals(Location loc)
+	{
+		for (AutoRefTeam team : teams)
+			for (BlockGoal goal : team.getTeamGoals(BlockGoal.class))
+				goal.blockChanged(loc.getBlock());
+	}
+
+	private void rescanBlockGoals()
+	{
+		for (AutoRefTeam team : teams)
+			for (BlockGoal goal : team.getTeamGoals(BlockGoal.class))
+				if (!goal.rescan()) AutoReferee.log("Objective tracking out of sync: " + goal, Level.FINE);
+	}
+
+	private void scheduleWinConditionCheck()
+	{
+		if (winConditionCheckPending) return;
+		winConditionCheckPending = true;
+
 		Plugin plugin = AutoReferee.getInstance();
 		plugin.getServer().getScheduler().runTask(plugin,
 			new Runnable(){ public void run(){ _checkWinConditions(); } });
 	}
 
+	/**
+	 * Checks if any team has satisfied the win conditions.
+	 */
 	private void _checkWinConditions()
 	{
+		winConditionCheckPending = false;
+
+		if (pendingFullCheck) rescanBlockGoals();
+		else for (Location loc : pendingGoalChanges) updateBlockGoals(loc);
+
+		pendingGoalChanges.clear();
+		pendingFullCheck = false;
+
 		if (getCurrentState().inProgress())
 		{
 			Set<AutoRefTeam> winningTeams = Sets.newHashSet();
@@ -2809,8 +3091,8 @@ public class AutoRefMatch implements Metadatable
 		if (plugin.getLobbyWorld() != null)
 			new MatchUnloadTask().runTaskLater(plugin, termDelay * 20L);
 
-		if (itemElevatorDetectionTask != null) itemElevatorDetectionTask.cancel();
-		itemElevatorDetectionTask = null;
+		if (itemTracker != null) itemTracker.cancel();
+		itemTracker = null;
 
 		// set the time to day
 		getWorld().setTime(0L);
@@ -2876,7 +3158,7 @@ public class AutoRefMatch implements Metadatable
 	 * Adds a player to the list of expected players, without a team affiliation.
 	 */
 	public void addExpectedPlayer(OfflinePlayer opl)
-	{ expectedPlayers.add(opl.getName().toLowerCase()); }
+	{ expectedPlayers.add(opl.getName().toLowerCase()); invalidateRoles(); }
 
 	/**
 	 * Gets the team the specified player is expected to join.
@@ -2908,6 +3190,7 @@ public class AutoRefMatch implements Metadatable
 		for (AutoRefTeam t : teams)
 			t.getExpectedPlayers().remove(name);
 		expectedPlayers.remove(name);
+		invalidateRoles();
 	}
 
 	/**
@@ -3015,19 +3298,45 @@ public class AutoRefMatch implements Metadatable
 		this.checkWinConditions();
 	}
 
+	// exact lookup of players by lowercase name (Bukkit players have no UUID here)
+	private Map<String, AutoRefPlayer> playerIndex = Maps.newHashMap();
+
+	protected void indexPlayer(AutoRefPlayer apl)
+	{ playerIndex.put(apl.getName().toLowerCase(), apl); invalidateRoles(); }
+
+	protected void unindexPlayer(AutoRefPlayer apl, AutoRefTeam team)
+	{
+		// only remove the entry if it still belongs to this team
+		AutoRefPlayer existing = playerIndex.get(apl.getName().toLowerCase());
+		if (existing != null && existing.getTeam() == team)
+			playerIndex.remove(apl.getName().toLowerCase());
+		invalidateRoles();
+	}
+
 	/**
-	 * Gets AutoRefPlayer object associated with a given player.
+	 * Gets AutoRefPlayer object associated with a given player name. The name must
+	 * match exactly (ignoring case). Use {@link #findPlayer(String)} for user input.
 	 *
 	 * @param name player name
 	 * @return matching AutoRefPlayer object, or null if no match
 	 */
 	public AutoRefPlayer getPlayer(String name)
+	{ return name == null ? null : playerIndex.get(name.toLowerCase()); }
+
+	/**
+	 * Finds the AutoRefPlayer object best matching a partial player name. This is a
+	 * linear search and should only be used for user input, such as command arguments.
+	 *
+	 * @param name full or partial player name
+	 * @return matching AutoRefPlayer object, or null if no match
+	 */
+	public AutoRefPlayer findPlayer(String name)
 	{
-		AutoRefPlayer bapl = null;
-		if (name != null)
+		AutoRefPlayer bapl = getPlayer(name);
+		if (bapl == null && name != null)
 		{
 			int score, b = Integer.MAX_VALUE;
-			for (AutoRefPlayer apl : getPlayers())
+			for (AutoRefPlayer apl : playerIndex.values())
 			{
 				score = apl.nameSearch(name);
 				if (score < b) { b = score; bapl = apl; }
@@ -3081,9 +3390,8 @@ public class AutoRefMatch implements Metadatable
 	 */
 	public AutoRefTeam getPlayerTeam(Player player)
 	{
-		for (AutoRefTeam team : teams)
-			if (team.getPlayer(player) != null) return team;
-		return null;
+		AutoRefPlayer apl = getPlayer(player);
+		return apl == null ? null : apl.getTeam();
 	}
 
 	/**
@@ -3121,10 +3429,8 @@ public class AutoRefMatch implements Metadatable
 		// check start region flags
 		if (inStartRegion(loc)) return getStartRegionFlags().contains(flag);
 
-		boolean is = flag.defaultValue; Set<AutoRefRegion> regions = getRegions();
-		if (regions != null) for ( AutoRefRegion reg : regions )
-			if (reg.contains(loc)) { is = false; if (reg.is(flag)) return true; }
-		return is;
+		return regionIndex == null ? flag.defaultValue
+			: regionIndex.hasFlag(loc, flag, null, flag.defaultValue);
 	}
 
 	private class MatchReportSaver extends BukkitRunnable
@@ -3153,6 +3459,19 @@ public class AutoRefMatch implements Metadatable
 		public void run()
 		{
 			broadcastSync(ChatColor.RED + "Generating Match Summary...");
+
+			// if the report is only saved locally, and nobody wants to see it first,
+			// it can be written straight to disk without building it in memory
+			if (this.localStorage != null && serveLocally() &&
+				MatchUploadStatsEvent.getHandlerList().getRegisteredListeners().length == 0)
+			{
+				String localFileID = new SimpleDateFormat("yyyy.MM.dd-HH.mm.ss").format(new Date()) + ".html";
+				if (streamReport(new File(this.localStorage, localFileID)))
+					broadcastSync(ChatColor.RED + "Match Summary: " + ChatColor.RESET + webDirectory + localFileID);
+				else broadcastSync(ChatColor.RED + AutoReferee.NO_WEBSTATS_MESSAGE);
+				return;
+			}
+
 			String report = matchReportGenerator.generate(AutoRefMatch.this);
 
 			MatchUploadStatsEvent event = new MatchUploadStatsEvent(AutoRefMatch.this, report);
@@ -3181,6 +3500,22 @@ public class AutoRefMatch implements Metadatable
 			if (webstats == null) broadcastSync(ChatColor.RED + AutoReferee.NO_WEBSTATS_MESSAGE);
 			else broadcastSync(ChatColor.RED + "Match Summary: " + ChatColor.RESET + webstats);
 		}
+
+		private boolean streamReport(File localReport)
+		{
+			Writer out = null;
+			try
+			{
+				out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(localReport), "UTF-8"));
+				matchReportGenerator.generate(AutoRefMatch.this, out);
+				out.close();
+
+				localReport.setReadable(true);
+				return true;
+			}
+			catch (IOException e) { e.printStackTrace(); return false; }
+			finally { IOUtils.closeQuietly(out); }
+		}
 	}
 
 	private void logPlayerStats()
@@ -3358,6 +3693,22 @@ public class AutoRefMatch implements Metadatable
 					playerActors.add((AutoRefPlayer) o);
 		}
 
+		// restores an event read back from the transcript journal
+		TranscriptEvent(EventType type, String coloredMessage, Location loc,
+			long timestamp, Collection<Object> actors)
+		{
+			this.type = type;
+			this.message = coloredMessage;
+			this.location = loc;
+			this.timestamp = timestamp;
+
+			this.actors = Sets.newHashSet(actors);
+			this.playerActors = Sets.newHashSet();
+			for (Object o : actors)
+				if (o instanceof AutoRefPlayer)
+					playerActors.add((AutoRefPlayer) o);
+		}
+
 		public String getTimestamp()
 		{
 			long t = getSeconds();
@@ -3377,54 +3728,36 @@ public class AutoRefMatch implements Metadatable
 	}
 
 	/**
-	 * Adds an event to the match transcript. Announces the event to the appropriate recipients.
+	 * Adds an event to the match transcript. Announces the event to the appropriate
+	 * recipients on the next tick, along with any other events from this tick.
 	 *
 	 * @param event event to be added to the transcript
 	 */
 	public void addEvent(TranscriptEvent event)
 	{
-		AutoReferee plugin = AutoReferee.getInstance();
 		AutoReferee.callEvent(new MatchTranscriptEvent(this, event));
-		transcript.add(event);
-
-		Collection<Player> recipients = null;
-		switch (event.getType().getVisibility())
-		{
-			case REFEREES: recipients = getReferees(false); break;
-			case TEAM:
-				recipients = Sets.newHashSet();
-				for (AutoRefPlayer p : event.getPlayerActors())
-				{
-					for (AutoRefPlayer teamPlayer : p.getTeam().getPlayers())
-					{ recipients.add(teamPlayer.getPlayer()); }
-				}
-				break;
-			case ALL: recipients = getWorld().getPlayers(); break;
-			case NONE: recipients = null; break;
-			default: break;
-		}
-
-		String message = event.getColoredMessage();
-
-		if (recipients != null) for (Player player : recipients)
-			player.sendMessage(message);
+		transcript.append(event);
 
-		if (plugin.isConsoleLoggingEnabled())
-		{
-			if (plugin.isColoredConsoleLoggingEnabled())
-				Bukkit.getConsoleSender().sendMessage("[AR] " + event.toString());
-			else
-				AutoReferee.log(event.toString());
-		}
+		// announcements and logging are batched up and sent on the next tick
+		transcriptDispatcher.dispatch(event);
 	}
 
 	/**
-	 * Gets the current match transcript up to this point in time.
+	 * Gets the most recent events in the match transcript. Only a limited number of
+	 * events are kept in memory; use {@link #getTranscriptJournal()} for the full transcript.
 	 *
-	 * @return immutable copy of the match transcript
+	 * @return copy of the recent events in the match transcript
 	 */
 	public List<TranscriptEvent> getTranscript()
-	{ return Collections.unmodifiableList(transcript); }
+	{ return transcript.getRecent(); }
+
+	/**
+	 * Gets the journal holding the full match transcript.
+	 *
+	 * @return match transcript journal
+	 */
+	public TranscriptJournal getTranscriptJournal()
+	{ return transcript; }
 
 	/**
 	 * Colors a message with team and objective colors. Prepares a message for broadcasting
@@ -21,6 +21,7 @@ import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.potion.Potion;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionType;
+import org.bukkit.scheduler.BukkitRunnable;
 
 import org.mctourney.autoreferee.AutoRefMatch.RespawnMode;
 import org.mctourney.autoreferee.AutoRefMatch.TranscriptEvent;
@@ -38,7 +39,6 @@ import org.mctourney.autoreferee.util.PlayerUtil;
 import org.apache.commons.collections.map.DefaultedMap;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.MapDifference;
 import com.google.common.collect.Sets;
 
 /**
@@ -138,7 +138,7 @@ public class AutoRefPlayer implements Metadatable, Comparable<AutoRefPlayer>
 	 * Sets the team this player is on.
 	 */
 	public void setTeam(AutoRefTeam team)
-	{ this.team = team; }
+	{ this.team = team; this.carryingCounts = null; }
 
 	protected Map<String, Object> metadata = Maps.newHashMap();
 
@@ -319,14 +319,18 @@ public class AutoRefPlayer implements Metadatable, Comparable<AutoRefPlayer>
 	public int getDeathCount()
 	{ return totalDeaths; }
 
-	// tracking objective items
+	// tracking objective items, as of the last carrying update
 	private GoalsInventorySnapshot carrying;
 
+	// running objective counts, adjusted by inventory events between updates
+	private GoalsInventorySnapshot carryingCounts = null;
+	private boolean carryingUpdatePending = false;
+
 	private int currentHealth = 20;
 	private int currentArmor = 0;
 
 	/**
-	 * Gets the objectives carried by this player.
+	 * Gets the objectives carried by this player, rescanning the player's inventory.
 	 *
 	 * @return set of objectives
 	 */
@@ -335,11 +339,68 @@ public class AutoRefPlayer implements Metadatable, Comparable<AutoRefPlayer>
 		Player p = getPlayer();
 		AutoRefTeam t = getTeam();
 		if (p == null || t == null)
-		{ carrying = new GoalsInventorySnapshot(); }
+		{ return new GoalsInventorySnapshot(); }
 		else
-		{ carrying = new GoalsInventorySnapshot(p.getInventory(), t.getObjectives()); }
+		{ return new GoalsInventorySnapshot(p.getInventory(), t.getObjectives()); }
+	}
+
+	/**
+	 * Gets the objectives carried by this player as of the last carrying update, without
+	 * rescanning the player's inventory. The returned snapshot should not be modified.
+	 *
+	 * @return set of objectives
+	 */
+	public GoalsInventorySnapshot getLastCarrying()
+	{ return carrying == null ? getCarrying() : carrying; }
+
+	/**
+	 * Records an item being added to or removed from this player's inventory. If the item
+	 * is an objective, the change is reported on the next tick, along with any other
+	 * changes made during this tick.
+	 *
+	 * @param item item added or removed
+	 * @param delta number of items added, negative if items were removed
+	 */
+	public void inventoryChanged(ItemStack item, int delta)
+	{
+		AutoRefTeam t = getTeam();
+		if (t == null || item == null || delta == 0) return;
+
+		int key = BlockData.keyOf(item);
+		boolean changed = false;
+
+		for (BlockData goal : t.getObjectives()) if (goal.matchesKey(key))
+		{
+			changed = true;
+			if (carryingCounts == null) continue;
 
-		return carrying;
+			// if the counts have drifted, fall back to a full rescan
+			int count = carryingCounts.getInt(goal) + delta;
+			if (count < 0) carryingCounts = null;
+			else carryingCounts.put(goal, count);
+		}
+
+		if (changed) scheduleCarryingUpdate();
+	}
+
+	/**
+	 * Records an unknown change to this player's inventory. The inventory will be
+	 * rescanned on the next tick.
+	 */
+	public void inventoryChanged()
+	{ carryingCounts = null; scheduleCarryingUpdate(); }
+
+	private void scheduleCarryingUpdate()
+	{
+		if (carryingUpdatePending) return;
+		carryingUpdatePending = true;
+
+		new BukkitRunnable()
+		{
+			@Override
+			public void run()
+			{ carryingUpdatePending = false; flushCarrying(); }
+		}.runTask(AutoReferee.getInstance());
 	}
 
 	private GoalsInventorySnapshot beforeOpeningInventory;
@@ -865,23 +926,29 @@ public class AutoRefPlayer implements Metadatable, Comparable<AutoRefPlayer>
 	public boolean isInsideLane()
 	{ return getExitLocation() == null; }
 
+	/**
+	 * Rescans this player's inventory and reports any changes to the objectives carried.
+	 */
 	public void updateCarrying()
+	{ carryingCounts = null; flushCarrying(); }
+
+	private void flushCarrying()
 	{
 		Player player = getPlayer();
 		if (player == null) return;
 
 		if (getTeam() != null)
 		{
+			if (carryingCounts == null)
+				carryingCounts = getCarrying();
+
 			GoalsInventorySnapshot oldCarrying = carrying;
-			carrying = null; // invalidate old value
-			carrying = getCarrying();
+			carrying = new GoalsInventorySnapshot(carryingCounts);
 
 			if (oldCarrying == null)
 			{ return; }
 
-			MapDifference<BlockData, Integer> diff = oldCarrying.getDiff(carrying);
-
-			if (!diff.areEqual())
+			if (!oldCarrying.equals(carrying))
 			{
 				for (BlockGoal goal : getTeam().getTeamGoals(BlockGoal.class))
 					if (goal.getItemStatus() == AutoRefGoal.ItemStatus.NONE && carrying.containsKey(goal.getItem()))
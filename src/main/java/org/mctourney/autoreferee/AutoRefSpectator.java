@@ -43,7 +43,8 @@ public class AutoRefSpectator extends AutoRefPlayer
 
 	public void setStreamer(boolean b)
 	{
-		this.streamer = b; this.match.setupSpectators(this.getPlayer());
+		this.streamer = b; this.match.invalidateRoles();
+		this.match.setupSpectators(this.getPlayer());
 		this.getPlayer().sendMessage(ChatColor.GREEN + "You are " +
 			(this.streamer ? "now" : "no longer") + " in streamer mode!");
 	}
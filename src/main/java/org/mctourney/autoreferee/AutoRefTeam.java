@@ -28,6 +28,8 @@ import org.mctourney.autoreferee.goals.scoreboard.AutoRefObjective;
 import org.mctourney.autoreferee.listeners.GoalsInventorySnapshot;
 import org.mctourney.autoreferee.listeners.ZoneListener;
 import org.mctourney.autoreferee.regions.AutoRefRegion;
+import org.mctourney.autoreferee.regions.LaneField;
+import org.mctourney.autoreferee.regions.RegionIndex;
 import org.mctourney.autoreferee.util.BlockData;
 import org.mctourney.autoreferee.util.Metadatable;
 import org.mctourney.autoreferee.util.PlayerKit;
@@ -135,7 +137,10 @@ public class AutoRefTeam implements Metadatable, Comparable<AutoRefTeam>
 	 * Adds a player to the list of expected players for this team by name.
 	 */
 	public void addExpectedPlayer(String name)
-	{ expectedPlayers.add(name.toLowerCase()); }
+	{
+		expectedPlayers.add(name.toLowerCase());
+		if (match != null) match.invalidateRoles();
+	}
 
 	/**
 	 * Gets the players expected to join this team.
@@ -302,10 +307,10 @@ public class AutoRefTeam implements Metadatable, Comparable<AutoRefTeam>
 	public boolean addRegion(AutoRefRegion reg)
 	{
 		for (AutoRefRegion ereg : match.getRegions())
-			if (reg.equals(ereg)) { ereg.addOwners(this); return true; }
+			if (reg.equals(ereg)) { ereg.addOwners(this); invalidateLaneField(); return true; }
 
 		reg.addOwners(this);
-		match.getRegions().add(reg);
+		match.addRegion(reg);
 		return true;
 	}
 
@@ -574,7 +579,11 @@ public class AutoRefTeam implements Metadatable, Comparable<AutoRefTeam>
 	 * @return player object if one exists, otherwise null
 	 */
 	public AutoRefPlayer getPlayer(Player player)
-	{ return player == null ? null : getPlayer(player.getName()); }
+	{
+		if (player != null) for (AutoRefPlayer apl : players)
+			if (apl.getName().equalsIgnoreCase(player.getName())) return apl;
+		return null;
+	}
 
 	protected void addPlayer(AutoRefPlayer apl)
 	{
@@ -582,6 +591,7 @@ public class AutoRefTeam implements Metadatable, Comparable<AutoRefTeam>
 		if ( infoboardTeam != null)  infoboardTeam.addPlayer(Bukkit.getOfflinePlayer(apl.getName()));
 
 		apl.setTeam(this); this.players.add(apl);
+		if (this.getMatch() != null) this.getMatch().indexPlayer(apl);
 		if (this.getMatch() != null && this.getMatch().getCurrentState().inProgress())
 			this.playersCache.add(apl);
 	}
@@ -591,7 +601,9 @@ public class AutoRefTeam implements Metadatable, Comparable<AutoRefTeam>
 		if (scoreboardTeam != null) scoreboardTeam.removePlayer(Bukkit.getOfflinePlayer(apl.getName()));
 		if ( infoboardTeam != null)  infoboardTeam.removePlayer(Bukkit.getOfflinePlayer(apl.getName()));
 
-		return this.players.remove(apl);
+		if (!this.players.remove(apl)) return false;
+		if (this.getMatch() != null) this.getMatch().unindexPlayer(apl, this);
+		return true;
 	}
 
 	/**
@@ -728,6 +740,30 @@ public class AutoRefTeam implements Metadatable, Comparable<AutoRefTeam>
 		return distance;
 	}
 
+	private LaneField laneField = null;
+	private boolean laneFieldStale = true;
+
+	/**
+	 * Gets the precomputed lane for this team, building it if necessary.
+	 *
+	 * @return lane field, or null if lanes are not precomputed
+	 */
+	public LaneField getLaneField()
+	{
+		if (laneFieldStale && match != null)
+		{
+			laneField = match.useLaneFields() ? LaneField.build(this) : null;
+			laneFieldStale = false;
+		}
+		return laneField;
+	}
+
+	/**
+	 * Discards the precomputed lane for this team. It will be rebuilt when next needed.
+	 */
+	public void invalidateLaneField()
+	{ laneFieldStale = true; }
+
 	/**
 	 * Checks if players on this team can be in a given location, including sneak distance.
 	 *
@@ -744,6 +780,15 @@ public class AutoRefTeam implements Metadatable, Comparable<AutoRefTeam>
 	 */
 	public boolean canEnter(Location loc, Double distance)
 	{
+		// try to answer from the precomputed lane, if possible
+		LaneField field = getLaneField();
+		if (field != null && distance <= LaneField.MAX_DISTANCE)
+			switch (field.get(loc))
+		{
+			case LaneField.INSIDE: return true;
+			case LaneField.OUTSIDE: return false;
+		}
+
 		double bestdist = match.distanceToStartRegion(loc);
 		Set<AutoRefRegion> regions = getRegions();
 
@@ -791,10 +836,8 @@ public class AutoRefTeam implements Metadatable, Comparable<AutoRefTeam>
 		if (getMatch().inStartRegion(loc))
 			return getMatch().getStartRegionFlags().contains(flag);
 
-		boolean is = def; Set<AutoRefRegion> regions = getRegions();
-		if (regions != null) for ( AutoRefRegion reg : regions )
-			if (reg.contains(loc)) { is = false; if (reg.is(flag)) return true; }
-		return is;
+		RegionIndex index = getMatch().getRegionIndex();
+		return index == null ? def : index.hasFlag(loc, flag, this, def);
 	}
 
 	/**
@@ -828,15 +871,15 @@ public class AutoRefTeam implements Metadatable, Comparable<AutoRefTeam>
 	{
 		Set<BlockData> objectives = Sets.newHashSet();
 		for (AutoRefGoal goal : goals)
-			if (goal.hasItem()) objectives.add(goal.getItem());
-		objectives.remove(BlockData.AIR);
+			if (goal.hasItem() && !BlockData.AIR.matches(goal.getItem()))
+				objectives.add(goal.getItem());
 		return objectives;
 	}
 
 	public boolean canCraft(BlockData bdata)
 	{
 		for (AutoRefGoal goal : goals)
-		 if (goal.hasItem() && goal.getItem().equals(bdata) && goal.canCraftItem())
+		 if (goal.hasItem() && goal.getItem().matches(bdata) && goal.canCraftItem())
 			return false;
 		return true;
 	}
@@ -861,7 +904,7 @@ public class AutoRefTeam implements Metadatable, Comparable<AutoRefTeam>
 
 			for (AutoRefPlayer apl : getPlayers())
 			{
-				if (!apl.getCarrying().containsKey(goal.getItem())) continue;
+				if (!apl.getLastCarrying().containsKey(goal.getItem())) continue;
 				changeObjectiveStatus(goal, AutoRefGoal.ItemStatus.CARRYING); continue objloop;
 			}
 
@@ -2,6 +2,8 @@ package org.mctourney.autoreferee;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -23,7 +25,6 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.Event;
 import org.bukkit.generator.ChunkGenerator;
 import org.bukkit.plugin.Plugin;
-import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.plugin.messaging.Messenger;
 import org.bukkit.scheduler.BukkitRunnable;
@@ -49,10 +50,14 @@ import org.mctourney.autoreferee.listeners.WorldListener;
 import org.mctourney.autoreferee.listeners.ZoneListener;
 import org.mctourney.autoreferee.listeners.lobby.LobbyListener;
 import org.mctourney.autoreferee.listeners.lobby.LobbyListener.LobbyMode;
+import org.mctourney.autoreferee.util.EventExporter;
 import org.mctourney.autoreferee.util.NullChunkGenerator;
+import org.mctourney.autoreferee.util.Profiler;
+import org.mctourney.autoreferee.util.QueryUtil;
 import org.mctourney.autoreferee.util.SportBukkitUtil;
 import org.mctourney.autoreferee.util.commands.CommandManager;
 import org.mctourney.autoreferee.util.metrics.PieChartGraph;
+import org.mctourney.autoreferee.util.midi.MidiPlayer;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -99,6 +104,7 @@ public class AutoReferee extends JavaPlugin
 
 	// plugin channels (referee)
 	public static final String REFEREE_PLUGIN_CHANNEL = PLUGIN_CHANNEL_PREFIX + "referee";
+	public static final String REFEREE_V2_PLUGIN_CHANNEL = PLUGIN_CHANNEL_PREFIX + "referee2";
 	private SpectatorListener refChannelListener = null;
 
 	// name of the stored map configuration file
@@ -160,6 +166,21 @@ public class AutoReferee extends JavaPlugin
 	private boolean consoleLog = true;
 	private boolean consoleLogInColor = true;
 
+	// sends referee messages to an external server, if one is configured
+	private EventExporter nodeExporter = null;
+
+	private static final int NODE_API_QUEUE_SIZE = 8192;
+	private static final long NODE_API_FLUSH_MS = 250L;
+	private static final int NODE_API_RETRIES = 4;
+
+	/**
+	 * Gets the exporter for the node server receiving match messages.
+	 *
+	 * @return node server exporter, or null if no node server is configured
+	 */
+	public EventExporter getNodeExporter()
+	{ return nodeExporter; }
+
 	protected boolean isConsoleLoggingEnabled()
 	{ return consoleLog; }
 
@@ -197,15 +218,15 @@ public class AutoReferee extends JavaPlugin
 	public void clearMatch(AutoRefMatch match)
 	{ matches.remove(match.getWorld().getUID()); }
 
-	// track owner of a piece of tnt (perhaps with propagation)
-	private Map<UUID, AutoRefPlayer> tntOwner = Maps.newHashMap();
-
 	/**
 	 * Gets the player responsible for a primed TNT.
 	 * @param entity primed tnt entity
 	 */
 	public AutoRefPlayer getTNTOwner(Entity entity)
-	{ return tntOwner.get(entity.getUniqueId()); }
+	{
+		AutoRefMatch match = getMatch(entity.getWorld());
+		return match == null ? null : match.getAttributionTracker().getOwner(entity);
+	}
 
 	/**
 	 * Sets the player responsible for a primed TNT.
@@ -214,8 +235,9 @@ public class AutoReferee extends JavaPlugin
 	 */
 	public void setTNTOwner(Entity entity, AutoRefPlayer apl)
 	{
-		if (entity.getType() == EntityType.PRIMED_TNT)
-			tntOwner.put(entity.getUniqueId(), apl);
+		AutoRefMatch match = getMatch(entity.getWorld());
+		if (match != null && entity.getType() == EntityType.PRIMED_TNT)
+			match.getAttributionTracker().setOwner(entity, apl);
 	}
 
 	/**
@@ -223,7 +245,10 @@ public class AutoReferee extends JavaPlugin
 	 * @param entity primed tnt entity
 	 */
 	public AutoRefPlayer clearTNTOwner(Entity entity)
-	{ return tntOwner.remove(entity.getUniqueId()); }
+	{
+		AutoRefMatch match = getMatch(entity.getWorld());
+		return match == null ? null : match.getAttributionTracker().clear(entity);
+	}
 
 	/**
 	 * Gets team object associated with a player. Searches all matches for this player,
@@ -290,25 +315,24 @@ public class AutoReferee extends JavaPlugin
 		catch (IOException e)
 		{ AutoReferee.log("Failed to load properties file.", Level.SEVERE); }
 
-		PluginManager pm = getServer().getPluginManager();
 		PracticeCommands practice = new PracticeCommands(this);
 
 		String lobbymode = getConfig().getString("lobby.mode", "manual");
 		LobbyListener lobbyListener = LobbyMode.fromConfig(lobbymode).getInstance(this);
 
-		// listener utility classes, subdivided for organization
-		pm.registerEvents(new TeamListener(this), this);
-		pm.registerEvents(new CombatListener(this), this);
-		pm.registerEvents(new ZoneListener(this), this);
-		pm.registerEvents(new WorldListener(this), this);
-		pm.registerEvents(new ObjectiveTracker(this), this);
-		pm.registerEvents(new ObjectiveTracer(this), this);
+		// listener utility classes, subdivided for organization (timed by /autoref profile)
+		Profiler.registerEvents(new TeamListener(this), this);
+		Profiler.registerEvents(new CombatListener(this), this);
+		Profiler.registerEvents(new ZoneListener(this), this);
+		Profiler.registerEvents(new WorldListener(this), this);
+		Profiler.registerEvents(new ObjectiveTracker(this), this);
+		Profiler.registerEvents(new ObjectiveTracer(this), this);
 
 		// save this reference to use for setting up the referee channel later
-		pm.registerEvents(refChannelListener = new SpectatorListener(this), this);
+		Profiler.registerEvents(refChannelListener = new SpectatorListener(this), this);
 
-		pm.registerEvents(lobbyListener, this);
-		pm.registerEvents(practice, this);
+		Profiler.registerEvents(lobbyListener, this);
+		Profiler.registerEvents(practice, this);
 
 		// user interface commands in a custom command manager
 		commandManager = new CommandManager();
@@ -353,8 +377,18 @@ public class AutoReferee extends JavaPlugin
 		consoleLog = getConfig().getBoolean("console-log", true);
 		consoleLogInColor = getConfig().getBoolean("console-colors", true);
 
-		// setup the map library folder
+		// stream match messages to a node server, if there is one
+		String nodeUrl = getConfig().getString("node-api-url", null);
+		if (nodeUrl != null) try
+		{
+			nodeExporter = new EventExporter(new URL(nodeUrl), QueryUtil.getUserAgent(),
+				NODE_API_QUEUE_SIZE, NODE_API_FLUSH_MS, NODE_API_RETRIES);
+		}
+		catch (MalformedURLException e) { log("Invalid node-api-url: " + nodeUrl, Level.WARNING); }
+
+		// setup the map library folder, and keep its catalog up to date
 		AutoRefMap.getMapLibrary();
+		AutoRefMap.watchMapLibrary();
 
 		// process initial world(s), just in case
 		for ( World w : getServer().getWorlds() )
@@ -369,6 +403,12 @@ public class AutoReferee extends JavaPlugin
 	{
 		for (AutoRefMatch match : getMatches())
 			match.saveWorldConfiguration();
+		WorldConfigStore.shutdown();
+		MapDownloadManager.shutdown();
+		if (nodeExporter != null) nodeExporter.shutdown(2000L);
+		nodeExporter = null;
+		TranscriptDispatcher.shutdown();
+		MidiPlayer.stopAll();
 		getLogger().info(this.getName() + " disabled.");
 	}
 
@@ -378,6 +418,7 @@ public class AutoReferee extends JavaPlugin
 
 		// setup referee plugin channels
 		m.registerOutgoingPluginChannel(this, REFEREE_PLUGIN_CHANNEL);
+		m.registerOutgoingPluginChannel(this, REFEREE_V2_PLUGIN_CHANNEL);
 		m.registerIncomingPluginChannel(this, REFEREE_PLUGIN_CHANNEL, refChannelListener);
 	}
 
@@ -0,0 +1,224 @@
+package org.mctourney.autoreferee;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Item;
+import org.bukkit.entity.Player;
+
+import org.mctourney.autoreferee.util.BlockData;
+import org.mctourney.autoreferee.util.LocationUtil;
+import org.mctourney.autoreferee.util.ProfiledRunnable;
+import org.mctourney.autoreferee.util.TeleportationUtil;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Watches the dropped items in a match for item elevators. Items are registered when they
+ * spawn and removed when they are picked up, despawn, or otherwise disappear. Positions
+ * are kept in flat arrays, and items which have not moved are skipped without looking
+ * at any blocks. Each item is checked once {@link #INTERVAL} ticks have passed since it
+ * was last checked, within a fixed amount of time per tick. If an item's check is late,
+ * the rise threshold is scaled by the ticks which actually passed.
+ */
+public class ItemTracker extends ProfiledRunnable
+{
+	private static final long INTERVAL = 5L;
+	private static final double DISTANCE_THRESHOLD = 1.8;
+	private static final double YDELTA_THRESHOLD = 0.8;
+	private static final double EPSILON = 0.001;
+
+	// time spent checking items each tick, in nanoseconds
+	private static final long TICK_BUDGET = TimeUnit.MILLISECONDS.toNanos(1L);
+
+	private static final byte STATE_NONE = 0, STATE_RISING = 1, STATE_ELEVATED = 2;
+
+	private final AutoRefMatch match;
+
+	// slot for each tracked item, keyed by entity id
+	private final Map<Integer, Integer> slots = Maps.newHashMap();
+
+	private int size = 0;
+	private Item[] items = new Item[64];
+	private double[] lastX = new double[64], lastY = new double[64], lastZ = new double[64];
+	private double[] stopY = new double[64];
+	private boolean[] stopped = new boolean[64];
+	private byte[] state = new byte[64];
+	private long[] lastTick = new long[64];
+
+	// next slot to be checked, and ticks since this tracker started
+	private int cursor = 0;
+	private long ticks = 0L;
+
+	// reused to avoid allocating a location for every item
+	private final Location loc = new Location(null, 0, 0, 0);
+
+	ItemTracker(AutoRefMatch match)
+	{
+		this.match = match;
+		for (Item item : match.getWorld().getEntitiesByClass(Item.class)) track(item);
+	}
+
+	/**
+	 * Starts checking tracked items.
+	 */
+	void start()
+	{ this.runTaskTimer(AutoReferee.getInstance(), 0L, 1L); }
+
+	/**
+	 * Starts tracking an item. Does nothing if the item is already tracked.
+	 *
+	 * @param item dropped item
+	 */
+	public void track(Item item)
+	{
+		if (slots.containsKey(item.getEntityId())) return;
+		if (size == items.length) grow();
+
+		int i = size++;
+		slots.put(item.getEntityId(), i);
+		items[i] = item;
+
+		item.getLocation(loc);
+		lastX[i] = loc.getX(); lastY[i] = loc.getY(); lastZ[i] = loc.getZ();
+		stopped[i] = false; state[i] = STATE_NONE;
+		lastTick[i] = ticks;
+	}
+
+	/**
+	 * Stops tracking an item.
+	 *
+	 * @param item dropped item
+	 */
+	public void untrack(Item item)
+	{
+		Integer i = slots.get(item.getEntityId());
+		if (i != null) remove(i);
+	}
+
+	/**
+	 * Checks if an item has been raised by an item elevator.
+	 *
+	 * @param item dropped item
+	 * @return true if the item has been seen rising through solid blocks
+	 */
+	public boolean isElevated(Item item)
+	{
+		Integer i = slots.get(item.getEntityId());
+		return i != null && state[i] != STATE_NONE;
+	}
+
+	/**
+	 * Gets the number of items being tracked.
+	 *
+	 * @return number of tracked items
+	 */
+	public int size()
+	{ return size; }
+
+	@Override
+	protected World getProfiledWorld()
+	{ return match.getWorld(); }
+
+	@Override
+	protected void tick()
+	{
+		long deadline = System.nanoTime() + TICK_BUDGET;
+		World world = match.getWorld();
+		++ticks;
+
+		// at most one pass over the items, checking those which are due
+		for (int n = size; n > 0 && size > 0; --n)
+		{
+			if (cursor >= size) cursor = 0;
+
+			long elapsed = ticks - lastTick[cursor];
+			if (elapsed < INTERVAL) { ++cursor; continue; }
+
+			if (check(world, cursor, elapsed)) lastTick[cursor++] = ticks;
+			if (System.nanoTime() > deadline) break;
+		}
+	}
+
+	// returns false if the slot was removed (and now holds a different item)
+	private boolean check(World world, int i, long elapsed)
+	{
+		Item item = items[i];
+		if (!item.isValid()) { remove(i); return false; }
+
+		item.getLocation(loc);
+		double x = loc.getX(), y = loc.getY(), z = loc.getZ();
+		double ydelta = y - lastY[i];
+
+		// nothing can change for an item which is sitting still
+		boolean moved = Math.abs(x - lastX[i]) > EPSILON || Math.abs(ydelta) > EPSILON
+			|| Math.abs(z - lastZ[i]) > EPSILON;
+		lastX[i] = x; lastY[i] = y; lastZ[i] = z;
+		if (!moved && state[i] == STATE_NONE && stopped[i] && stopY[i] == y) return true;
+
+		Block block = world.getBlockAt(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+
+		// if the item is moving upwards through a solid block
+		if (ydelta > YDELTA_THRESHOLD * elapsed / INTERVAL && state[i] == STATE_NONE && !TeleportationUtil.isBlockPassable(block))
+			state[i] = STATE_RISING;
+
+		double dy = stopped[i] ? y - stopY[i] : 0.0;
+		if (state[i] != STATE_NONE && dy >= DISTANCE_THRESHOLD)
+			state[i] = STATE_ELEVATED;
+
+		if (ydelta < EPSILON)
+		{
+			// record the last height it was stopped at
+			stopY[i] = y; stopped[i] = true;
+
+			boolean atrest = !TeleportationUtil.isBlockPassable(block.getRelative(0, -1, 0));
+			if (state[i] == STATE_ELEVATED && atrest)
+			{
+				// if the item didn't elevate high enough, don't worry about it
+				if (dy < DISTANCE_THRESHOLD) { state[i] = STATE_NONE; return true; }
+				match.setLastNotificationLocation(item.getLocation());
+
+				String coords = LocationUtil.toBlockCoords(loc);
+				String msg = ChatColor.DARK_GRAY + String.format(
+					"Possible Item Elevator @ (%s) [y%+d] %s", coords, Math.round(dy),
+					new BlockData(item.getItemStack()).getDisplayName());
+
+				for (Player ref : match.getReferees()) ref.sendMessage(msg);
+				AutoReferee.log(msg);
+			}
+		}
+		return true;
+	}
+
+	// moves the last item into this slot
+	private void remove(int i)
+	{
+		slots.remove(items[i].getEntityId());
+		int last = --size;
+		if (i != last)
+		{
+			items[i] = items[last];
+			lastX[i] = lastX[last]; lastY[i] = lastY[last]; lastZ[i] = lastZ[last];
+			stopY[i] = stopY[last]; stopped[i] = stopped[last]; state[i] = state[last];
+			lastTick[i] = lastTick[last];
+			slots.put(items[i].getEntityId(), i);
+		}
+		items[last] = null;
+	}
+
+	private void grow()
+	{
+		int n = items.length * 2;
+		items = Arrays.copyOf(items, n);
+		lastX = Arrays.copyOf(lastX, n); lastY = Arrays.copyOf(lastY, n); lastZ = Arrays.copyOf(lastZ, n);
+		stopY = Arrays.copyOf(stopY, n);
+		stopped = Arrays.copyOf(stopped, n);
+		state = Arrays.copyOf(state, n);
+		lastTick = Arrays.copyOf(lastTick, n);
+	}
+}
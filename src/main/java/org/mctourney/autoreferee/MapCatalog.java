@@ -0,0 +1,241 @@
+package org.mctourney.autoreferee;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+import org.bukkit.scheduler.BukkitRunnable;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import org.jdom2.Element;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Index of the maps installed in the map library. Lookups are answered from memory;
+ * the library is only scanned by the background watcher, or when a refresh is asked
+ * for, such as after a download. Each zip is only opened and hashed when it is first
+ * seen, or when its size or modification time changes. The index is saved alongside
+ * the map library so that it survives restarts.
+ */
+class MapCatalog
+{
+	private static final String INDEX_FILENAME = ".catalog.json";
+
+	// how often the library is checked for changes in the background, in ticks
+	private static final long WATCH_PERIOD = 30 * 20L;
+
+	static class Entry
+	{
+		String path;
+		long size, modified;
+
+		// null if the file is not a valid map
+		String name, version, md5;
+	}
+
+	private final File library;
+	private final File indexFile;
+
+	// cataloged files, keyed by path (replaced, never modified)
+	private Map<String, Entry> entries = null;
+
+	// installed maps, keyed by normalized name
+	private Map<String, AutoRefMap> maps = Maps.newHashMap();
+
+	private BukkitRunnable watcher = null;
+
+	MapCatalog(File library)
+	{
+		this.library = library;
+		this.indexFile = new File(library, INDEX_FILENAME);
+	}
+
+	/**
+	 * Gets all maps in the library, as of the last time it was checked for changes.
+	 *
+	 * @return set of installed maps
+	 */
+	synchronized Set<AutoRefMap> getMaps()
+	{
+		if (entries == null) load();
+		return ImmutableSet.copyOf(maps.values());
+	}
+
+	/**
+	 * Gets an installed map by name, as of the last time the library was checked
+	 * for changes.
+	 *
+	 * @param name normalized map name
+	 * @return installed map, or null if no map has this name
+	 */
+	synchronized AutoRefMap getMap(String name)
+	{
+		if (entries == null) load();
+		return maps.get(name.toLowerCase());
+	}
+
+	/**
+	 * Checks the library for added, removed, or modified zips. Only zips which have
+	 * changed since the last check are reopened, outside of the catalog lock.
+	 */
+	void refresh()
+	{
+		Map<String, Entry> known;
+		synchronized (this)
+		{
+			if (entries == null) load();
+			known = entries;
+		}
+
+		boolean changed = false;
+
+		File[] files = library.listFiles();
+		if (files == null) files = new File[0];
+
+		Map<String, Entry> current = Maps.newHashMapWithExpectedSize(files.length);
+		for (File zip : files)
+		{
+			// skip directories, our own files, and incomplete downloads
+			if (zip.isDirectory() || zip.getName().startsWith(".")) continue;
+			if (zip.getName().endsWith(MapDownloadManager.PART_SUFFIX)) continue;
+
+			String path = zip.getPath();
+			Entry entry = known.get(path);
+
+			if (entry == null || entry.size != zip.length() || entry.modified != zip.lastModified())
+			{
+				entry = catalog(zip);
+				changed = true;
+			}
+			current.put(path, entry);
+		}
+
+		if (changed || current.size() != known.size())
+		{
+			synchronized (this)
+			{
+				entries = current;
+				rebuildMaps();
+				save();
+			}
+
+			// templates are only dropped once their map has left the catalog
+			Set<String> installed = Sets.newHashSet();
+			for (Entry entry : current.values())
+				if (entry.md5 != null) installed.add(entry.md5);
+			MapTemplateCache.prune(installed);
+		}
+	}
+
+	/**
+	 * Starts checking the library for changes in the background.
+	 */
+	synchronized void startWatching()
+	{
+		if (watcher != null) return;
+		watcher = new BukkitRunnable()
+		{
+			@Override
+			public void run()
+			{ refresh(); }
+		};
+		watcher.runTaskTimerAsynchronously(AutoReferee.getInstance(), 0L, WATCH_PERIOD);
+	}
+
+	/**
+	 * Computes the md5 checksum of a file, closing it afterwards.
+	 *
+	 * @return hex md5 checksum
+	 */
+	static String md5(File file) throws IOException
+	{
+		InputStream in = new FileInputStream(file);
+		try { return DigestUtils.md5Hex(in); }
+		finally { IOUtils.closeQuietly(in); }
+	}
+
+	private Entry catalog(File zip)
+	{
+		Entry entry = new Entry();
+		entry.path = zip.getPath();
+		entry.size = zip.length();
+		entry.modified = zip.lastModified();
+
+		try
+		{
+			Element worldConfig = AutoRefMap.getConfigFileData(zip);
+			if (worldConfig == null) return entry;
+
+			entry.name = "??"; entry.version = "1.0";
+			Element meta = worldConfig.getChild("meta");
+			if (meta != null)
+			{
+				entry.name = AutoRefMatch.normalizeMapName(meta.getChildText("name"));
+				entry.version = meta.getChildText("version");
+			}
+
+			entry.md5 = md5(zip);
+			return entry;
+		}
+		catch (Exception e)
+		{
+			AutoReferee.log("Could not catalog " + zip.getName() + ": " + e.getMessage(), Level.WARNING);
+			entry.name = null; return entry;
+		}
+	}
+
+	private void rebuildMaps()
+	{
+		maps.clear();
+		for (Entry entry : entries.values()) if (entry.name != null)
+		{
+			AutoRefMap map = new AutoRefMap(entry.name, entry.version, new File(entry.path), entry.md5);
+			maps.put(entry.name.toLowerCase(), map);
+		}
+	}
+
+	private void load()
+	{
+		entries = Maps.newHashMap();
+		if (!indexFile.exists()) return;
+
+		try
+		{
+			Type type = new TypeToken<List<Entry>>() {}.getType();
+			List<Entry> saved = new Gson().fromJson(FileUtils.readFileToString(indexFile), type);
+			if (saved != null) for (Entry entry : saved)
+				if (entry.path != null) entries.put(entry.path, entry);
+		}
+		catch (IOException e) { e.printStackTrace(); }
+		catch (JsonParseException e)
+		{ AutoReferee.log("Map catalog is corrupt, rebuilding", Level.WARNING); }
+
+		rebuildMaps();
+	}
+
+	private void save()
+	{
+		try
+		{
+			List<Entry> values = Lists.newArrayList(entries.values());
+			FileUtils.writeStringToFile(indexFile, new Gson().toJson(values));
+		}
+		catch (IOException e) { e.printStackTrace(); }
+	}
+}
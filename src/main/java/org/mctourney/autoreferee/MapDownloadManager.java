@@ -0,0 +1,228 @@
+package org.mctourney.autoreferee;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Downloads map zips on a bounded pool of worker threads. Concurrent requests for the
+ * same file share a single download, interrupted downloads are resumed with a range
+ * request, and the checksum is computed while the file is being written.
+ */
+class MapDownloadManager
+{
+	// suffix for incomplete downloads, kept to be resumed
+	static final String PART_SUFFIX = ".part";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int TIMEOUT_MS = 15 * 1000;
+
+	// not defined by HttpURLConnection
+	private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+	// minimum time between progress updates, in milliseconds
+	private static final long PROGRESS_PERIOD = 2000L;
+
+	/**
+	 * Receives progress updates for a download. Called from the download thread.
+	 */
+	interface Progress
+	{
+		/**
+		 * @param name file being downloaded
+		 * @param done bytes downloaded so far
+		 * @param total total size in bytes, or -1 if unknown
+		 */
+		void update(String name, long done, long total);
+	}
+
+	private static MapDownloadManager instance = null;
+
+	private final ExecutorService pool;
+
+	// in-progress downloads, keyed by destination path
+	private final ConcurrentMap<String, ListenableFuture<File>> downloads = Maps.newConcurrentMap();
+
+	MapDownloadManager(int threads)
+	{
+		this.pool = Executors.newFixedThreadPool(Math.max(1, threads),
+			new ThreadFactoryBuilder().setNameFormat("AutoReferee-download-%d").setDaemon(true).build());
+	}
+
+	/**
+	 * Gets the shared download manager, sized from the plugin configuration.
+	 *
+	 * @return download manager
+	 */
+	static synchronized MapDownloadManager get()
+	{
+		if (instance == null) instance = new MapDownloadManager(
+			AutoReferee.getInstance().getConfig().getInt("map-downloads.threads", 3));
+		return instance;
+	}
+
+	/**
+	 * Downloads a file, or joins a download of the same file already in progress.
+	 *
+	 * @param url location of the file
+	 * @param dest file to write to, only replaced once the download is verified
+	 * @param md5 expected hex md5 checksum, or null to skip verification
+	 * @param progress receives progress updates, possibly null
+	 * @return future for the downloaded file
+	 */
+	ListenableFuture<File> download(final URL url, final File dest, final String md5, final Progress progress)
+	{
+		final String key = dest.getAbsolutePath();
+		final SettableFuture<File> future = SettableFuture.create();
+
+		ListenableFuture<File> existing = downloads.putIfAbsent(key, future);
+		if (existing != null) return existing;
+
+		pool.execute(new Runnable()
+		{
+			public void run()
+			{
+				try { future.set(fetch(url, dest, md5, progress)); }
+				catch (Throwable t) { future.setException(t); }
+				finally { downloads.remove(key, future); }
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Stops all downloads in progress. Partial files are kept to be resumed later.
+	 */
+	static synchronized void shutdown()
+	{
+		if (instance != null) instance.pool.shutdownNow();
+		instance = null;
+	}
+
+	private static File fetch(URL url, File dest, String md5, Progress progress) throws IOException
+	{
+		File part = new File(dest.getPath() + PART_SUFFIX);
+		MessageDigest digest = newDigest();
+
+		URLConnection conn = url.openConnection();
+		conn.setConnectTimeout(TIMEOUT_MS);
+		conn.setReadTimeout(TIMEOUT_MS);
+
+		long offset = part.exists() ? part.length() : 0L;
+		if (offset > 0 && conn instanceof HttpURLConnection)
+			conn.setRequestProperty("Range", "bytes=" + offset + "-");
+
+		// the partial file can't be resumed (probably already complete), start over
+		if (offset > 0 && conn instanceof HttpURLConnection && ((HttpURLConnection) conn)
+			.getResponseCode() == HTTP_RANGE_NOT_SATISFIABLE)
+		{
+			((HttpURLConnection) conn).disconnect();
+			FileUtils.forceDelete(part);
+			return fetch(url, dest, md5, progress);
+		}
+
+		InputStream in = conn.getInputStream();
+		try
+		{
+			// resume only if the server honoured the range request
+			boolean resumed = offset > 0 && conn instanceof HttpURLConnection
+				&& ((HttpURLConnection) conn).getResponseCode() == HttpURLConnection.HTTP_PARTIAL;
+			if (resumed) digestFile(part, digest); else offset = 0L;
+
+			long length = conn.getContentLength();
+			long total = length < 0 ? -1L : offset + length;
+
+			OutputStream out = new FileOutputStream(part, resumed);
+			try
+			{
+				byte[] buffer = new byte[BUFFER_SIZE];
+				long done = offset, lastUpdate = System.currentTimeMillis();
+
+				int n; while ((n = in.read(buffer)) != -1)
+				{
+					if (Thread.interrupted()) throw new IOException("Download interrupted: " + dest.getName());
+
+					out.write(buffer, 0, n);
+					digest.update(buffer, 0, n);
+					done += n;
+
+					long now = System.currentTimeMillis();
+					if (progress != null && now - lastUpdate >= PROGRESS_PERIOD)
+					{ progress.update(dest.getName(), done, total); lastUpdate = now; }
+				}
+			}
+			finally { IOUtils.closeQuietly(out); }
+		}
+		finally { IOUtils.closeQuietly(in); }
+
+		// if the checksum did not match, the partial file is no good for resuming either
+		String md5comp = new String(Hex.encodeHex(digest.digest()));
+		if (md5 != null && !md5comp.equalsIgnoreCase(md5))
+		{
+			FileUtils.deleteQuietly(part);
+			throw new IOException("MD5 Mismatch: " + md5comp + " != " + md5);
+		}
+
+		if (dest.exists()) FileUtils.forceDelete(dest);
+		FileUtils.moveFile(part, dest);
+		return dest;
+	}
+
+	private static void digestFile(File file, MessageDigest digest) throws IOException
+	{
+		InputStream in = new DigestInputStream(new FileInputStream(file), digest);
+		try { byte[] buffer = new byte[BUFFER_SIZE]; while (in.read(buffer) != -1); }
+		finally { IOUtils.closeQuietly(in); }
+	}
+
+	private static MessageDigest newDigest()
+	{
+		try { return MessageDigest.getInstance("MD5"); }
+		catch (NoSuchAlgorithmException e) { throw new RuntimeException(e); }
+	}
+
+	/**
+	 * Creates a progress listener which reports to a user.
+	 *
+	 * @param sender user receiving progress updates, possibly null
+	 * @return progress listener, or null if there is no one to report to
+	 */
+	static Progress progressFor(final CommandSender sender)
+	{
+		if (sender == null) return null;
+		return new Progress()
+		{
+			public void update(String name, long done, long total)
+			{
+				String amount = total < 0 ? FileUtils.byteCountToDisplaySize(done)
+					: String.format("%d%%", done * 100 / Math.max(1L, total));
+				AutoReferee.getInstance().sendMessageSync(sender,
+					ChatColor.DARK_GRAY + "Downloading " + name + ": " + amount);
+			}
+		};
+	}
+}
@@ -0,0 +1,223 @@
+package org.mctourney.autoreferee;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+
+/**
+ * Keeps one extracted copy of each installed map version, from which match worlds are
+ * cloned. Extracting a map only happens once per version, and cloning is a parallel
+ * file copy rather than a decompression. None of this should run on the main thread.
+ */
+class MapTemplateCache
+{
+	// files which must be unique to each world, and are never cloned
+	private static final Set<String> SKIP_FILES = Sets.newHashSet("uid.dat", "session.lock");
+
+	private static final int COPY_THREADS =
+		Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	// checksums of templates being copied right now, guarded by the class lock
+	private static final Multiset<String> cloning = HashMultiset.create();
+
+	/**
+	 * Gets root folder of template cache, generating folder if necessary.
+	 *
+	 * @return root folder of template cache
+	 */
+	static File getTemplateFolder()
+	{
+		File m = new File(AutoRefMap.getMapLibrary(), ".templates");
+		if (!m.exists()) m.mkdir();
+		return m;
+	}
+
+	/**
+	 * Gets the extracted template for a map, extracting it if necessary.
+	 *
+	 * @param zip map zip file
+	 * @param md5 checksum of the map zip, identifying this version of the map
+	 * @return world folder of the template
+	 * @throws IOException if the map cannot be extracted
+	 */
+	private static synchronized File getTemplate(File zip, String md5) throws IOException
+	{
+		File template = new File(getTemplateFolder(), md5);
+		if (template.isDirectory()) return template;
+
+		// extract to a temporary folder, so a partial template is never used
+		File tmp = new File(getTemplateFolder(), md5 + ".tmp");
+		if (tmp.exists()) FileUtils.deleteDirectory(tmp);
+
+		File root = extract(zip, tmp);
+		FileUtils.moveDirectory(root, template);
+		FileUtils.deleteQuietly(tmp);
+		return template;
+	}
+
+	/**
+	 * Creates a new world folder as a copy of a map's template, extracting the template
+	 * first if necessary. The template is not pruned while it is being copied.
+	 *
+	 * @param zip map zip file
+	 * @param md5 checksum of the map zip, identifying this version of the map
+	 * @param dest new world folder, replaced if it already exists
+	 * @throws IOException if the map cannot be extracted or the copy fails
+	 */
+	static void cloneTemplate(File zip, String md5, File dest) throws IOException
+	{
+		File template;
+		synchronized (MapTemplateCache.class)
+		{ template = getTemplate(zip, md5); cloning.add(md5); }
+
+		try
+		{
+			if (dest.exists()) FileUtils.deleteDirectory(dest);
+
+			List<File[]> copies = Lists.newArrayList();
+			collectCopies(template, dest, copies);
+
+			List<Callable<Void>> tasks = Lists.newArrayListWithCapacity(copies.size());
+			for (final File[] copy : copies) tasks.add(new Callable<Void>()
+			{
+				public Void call() throws IOException
+				{ copyFile(copy[0], copy[1]); return null; }
+			});
+			runAll(tasks);
+		}
+		finally
+		{
+			synchronized (MapTemplateCache.class)
+			{ cloning.remove(md5); }
+		}
+	}
+
+	// directories are created up front, files are queued up to be copied in parallel
+	private static void collectCopies(File src, File dest, List<File[]> copies) throws IOException
+	{
+		FileUtils.forceMkdir(dest);
+		File[] files = src.listFiles();
+		if (files == null) throw new IOException("Could not list " + src);
+
+		for (File f : files)
+		{
+			if (f.isDirectory()) collectCopies(f, new File(dest, f.getName()), copies);
+			else if (!SKIP_FILES.contains(f.getName()))
+				copies.add(new File[]{ f, new File(dest, f.getName()) });
+		}
+	}
+
+	private static void copyFile(File src, File dest) throws IOException
+	{
+		FileInputStream in = new FileInputStream(src);
+		FileOutputStream out = new FileOutputStream(dest);
+		try
+		{
+			FileChannel ic = in.getChannel(), oc = out.getChannel();
+			long size = ic.size(), pos = 0L;
+			while (pos < size) pos += ic.transferTo(pos, size - pos, oc);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(in);
+			IOUtils.closeQuietly(out);
+		}
+		dest.setLastModified(src.lastModified());
+	}
+
+	// returns the folder containing the map configuration file
+	private static File extract(File zip, final File dest) throws IOException
+	{
+		final ZipFile zfile = new ZipFile(zip);
+		try
+		{
+			File root = dest;
+			List<Callable<Void>> tasks = Lists.newArrayList();
+
+			Enumeration<? extends ZipEntry> entries = zfile.entries();
+			while (entries.hasMoreElements())
+			{
+				final ZipEntry entry = entries.nextElement();
+				final File f = new File(dest, entry.getName());
+				if (!f.getCanonicalPath().startsWith(dest.getCanonicalPath() + File.separator))
+					throw new IOException("Invalid entry in " + zip.getName() + ": " + entry.getName());
+
+				if (entry.isDirectory()) { FileUtils.forceMkdir(f); continue; }
+				FileUtils.forceMkdir(f.getParentFile());
+
+				if (f.getName().equals(AutoReferee.CFG_FILENAME)) root = f.getParentFile();
+				tasks.add(new Callable<Void>()
+				{
+					public Void call() throws IOException
+					{
+						InputStream in = zfile.getInputStream(entry);
+						try { FileUtils.copyInputStreamToFile(in, f); }
+						finally { IOUtils.closeQuietly(in); }
+						return null;
+					}
+				});
+			}
+
+			runAll(tasks);
+			return root;
+		}
+		finally { zfile.close(); }
+	}
+
+	private static void runAll(List<Callable<Void>> tasks) throws IOException
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(COPY_THREADS);
+		try
+		{
+			for (Future<Void> future : pool.invokeAll(tasks)) future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while copying map files");
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IOException(e.getCause().toString());
+		}
+		finally { pool.shutdownNow(); }
+	}
+
+	/**
+	 * Removes templates for maps that are no longer installed. Templates which are
+	 * being cloned are left alone.
+	 *
+	 * @param installed checksums of the installed maps
+	 */
+	static synchronized void prune(Set<String> installed)
+	{
+		File[] templates = getTemplateFolder().listFiles();
+		if (templates != null) for (File template : templates)
+		{
+			String md5 = template.getName();
+			if (!installed.contains(md5) && !cloning.contains(md5)) FileUtils.deleteQuietly(template);
+		}
+	}
+}
@@ -0,0 +1,261 @@
+package org.mctourney.autoreferee;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.messaging.Messenger;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Version 2 of the referee plugin channel. Referees whose client is listening on
+ * {@link AutoReferee#REFEREE_V2_PLUGIN_CHANNEL} receive all of the messages for a tick
+ * in a single framed payload, and fields which have not changed since they were last
+ * sent are left out. This is decided each time a message is sent, so a referee
+ * switches over as soon as their client registers the channel. Clients should still
+ * register the original referee channel, which is used for messages from the client.
+ * <p>
+ * Frame format: a version byte (2), a flags byte ({@link #FLAG_SNAPSHOT} if the frame
+ * starts a full resync), then a varint message count. Each message is a varint part
+ * count followed by its parts. Each part is a varint index into the strings already
+ * seen in this frame, or 0 followed by a new string (varint length, UTF-8 bytes).
+ * Messages which do not fit into one frame continue in the next frame.
+ */
+public class RefereeChannel
+{
+	public static final int VERSION = 2;
+	public static final int FLAG_SNAPSHOT = 1 << 0;
+
+	// leave some space below the maximum for the frame header
+	private static final int MAX_FRAME_SIZE = Messenger.MAX_MESSAGE_SIZE - 64;
+
+	// fields holding the current value of something, sent only when the value changes
+	private static final Set<String> STATE_FIELDS = ImmutableSet.of(
+		"hp", "armor", "kills", "deaths", "streak", "accuracy", "cape", "color", "name", "map", "time");
+
+	static class Session
+	{
+		// last value sent for each state field, keyed by the message minus its value
+		Map<String, String> shadow = Maps.newHashMap();
+		List<String[]> pending = Lists.newArrayList();
+		boolean snapshot = false;
+
+		/**
+		 * Queues a message, unless it is a state field which still has the value last sent.
+		 *
+		 * @param parts message parts
+		 * @return true if the message was queued
+		 */
+		boolean queue(String ...parts)
+		{
+			if (parts.length >= 2 && STATE_FIELDS.contains(parts[parts.length - 2]))
+			{
+				StringBuilder key = new StringBuilder();
+				for (int i = 0; i < parts.length - 1; ++i) key.append(parts[i]).append('\0');
+
+				String value = parts[parts.length - 1];
+				if (value != null && value.equals(shadow.put(key.toString(), value))) return false;
+			}
+
+			pending.add(parts);
+			return true;
+		}
+
+		/**
+		 * Starts a full resync, forgetting everything sent or queued before.
+		 */
+		void startSnapshot()
+		{
+			shadow.clear();
+			pending.clear();
+			snapshot = true;
+		}
+	}
+
+	private final AutoRefMatch match;
+	private final Map<String, Session> sessions = Maps.newHashMap();
+	private BukkitRunnable flushTask = null;
+
+	RefereeChannel(AutoRefMatch match)
+	{ this.match = match; }
+
+	/**
+	 * Checks if a referee's client is listening for this protocol.
+	 *
+	 * @param ref referee
+	 * @return true if messages to this referee should be sent using this protocol
+	 */
+	public static boolean isSupported(Player ref)
+	{ return ref.getListeningPluginChannels().contains(AutoReferee.REFEREE_V2_PLUGIN_CHANNEL); }
+
+	/**
+	 * Forgets everything sent to a referee, such as when they leave the match.
+	 *
+	 * @param name name of the referee
+	 */
+	public void remove(String name)
+	{ sessions.remove(name); }
+
+	// session for a referee, or null if their client isn't listening for this protocol
+	private Session getSession(Player ref)
+	{
+		if (!isSupported(ref)) { sessions.remove(ref.getName()); return null; }
+
+		Session session = sessions.get(ref.getName());
+		if (session == null)
+		{
+			// nothing has been sent yet, so start with a snapshot
+			sessions.put(ref.getName(), session = new Session());
+			session.snapshot = true;
+		}
+		return session;
+	}
+
+	/**
+	 * Starts a full resync for a referee. Everything sent afterwards is sent as part of
+	 * a snapshot, regardless of what was sent before.
+	 *
+	 * @param ref referee
+	 */
+	void startSnapshot(Player ref)
+	{
+		Session session = getSession(ref);
+		if (session != null) session.startSnapshot();
+	}
+
+	/**
+	 * Queues a message to be sent to a referee on the next tick.
+	 *
+	 * @param ref referee
+	 * @param parts message parts
+	 * @return false if this referee is not using this protocol, otherwise true
+	 */
+	boolean send(Player ref, String ...parts)
+	{
+		Session session = getSession(ref);
+		if (session == null) return false;
+
+		if (session.queue(parts)) scheduleFlush();
+		return true;
+	}
+
+	private void scheduleFlush()
+	{
+		if (flushTask != null) return;
+		flushTask = new BukkitRunnable()
+		{
+			@Override
+			public void run()
+			{ flushTask = null; flush(); }
+		};
+		flushTask.runTask(AutoReferee.getInstance());
+	}
+
+	/**
+	 * Sends all queued messages immediately.
+	 */
+	void flush()
+	{
+		for (Player ref : match.getWorld().getPlayers())
+		{
+			Session session = sessions.get(ref.getName());
+			if (session == null || session.pending.isEmpty()) continue;
+
+			try { for (byte[] frame : encode(session.pending, session.snapshot))
+				ref.sendPluginMessage(AutoReferee.getInstance(), AutoReferee.REFEREE_V2_PLUGIN_CHANNEL, frame); }
+			catch (IOException e) { e.printStackTrace(); }
+
+			session.pending.clear();
+			session.snapshot = false;
+		}
+
+		// referees who have left the match start over if they come back
+		for (Session session : sessions.values()) session.pending.clear();
+	}
+
+	/**
+	 * Encodes messages into one or more frames.
+	 *
+	 * @param messages messages, each a list of parts
+	 * @param snapshot whether the first frame starts a full resync
+	 * @return encoded frames
+	 * @throws IOException if the messages cannot be encoded
+	 */
+	public static List<byte[]> encode(List<String[]> messages, boolean snapshot) throws IOException
+	{
+		List<byte[]> frames = Lists.newArrayList();
+		int start = 0;
+		while (start < messages.size())
+		{
+			Map<String, Integer> strings = Maps.newHashMap();
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(body);
+
+			int end = start;
+			for (; end < messages.size(); ++end)
+			{
+				// write each message separately, so it can be left for the next frame
+				int mark = body.size();
+				Map<String, Integer> added = Maps.newHashMap();
+
+				String[] parts = messages.get(end);
+				writeVarInt(out, parts.length);
+				for (String part : parts)
+				{
+					String s = part == null ? "" : part;
+					Integer index = strings.get(s);
+					if (index == null) index = added.get(s);
+					if (index != null) { writeVarInt(out, index); continue; }
+
+					byte[] bytes = s.getBytes(AutoReferee.PLUGIN_CHANNEL_ENC);
+					writeVarInt(out, 0);
+					writeVarInt(out, bytes.length);
+					out.write(bytes);
+					added.put(s, strings.size() + added.size() + 1);
+				}
+
+				// a single message too large for a frame is dropped, rather than stalling
+				if (body.size() > MAX_FRAME_SIZE && end > start)
+				{ truncate(body, mark); break; }
+				strings.putAll(added);
+			}
+
+			ByteArrayOutputStream frame = new ByteArrayOutputStream(body.size() + 8);
+			DataOutputStream header = new DataOutputStream(frame);
+			header.writeByte(VERSION);
+			header.writeByte(snapshot && start == 0 ? FLAG_SNAPSHOT : 0);
+			writeVarInt(header, end - start);
+			body.writeTo(frame);
+
+			byte[] bytes = frame.toByteArray();
+			if (bytes.length <= Messenger.MAX_MESSAGE_SIZE) frames.add(bytes);
+			start = end;
+		}
+		return frames;
+	}
+
+	private static void truncate(ByteArrayOutputStream body, int size)
+	{
+		byte[] bytes = body.toByteArray();
+		body.reset();
+		body.write(bytes, 0, size);
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+}
@@ -0,0 +1,177 @@
+package org.mctourney.autoreferee;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import org.mctourney.autoreferee.listeners.SpectatorListener;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Decides which spectators are close enough to a player to be made invisible. Everyone
+ * in the match is bucketed into 16x16 columns as they move, so a spectator is only
+ * compared against the players in the neighbouring columns. A spectator becomes
+ * invisible within {@link SpectatorListener#SPECTATOR_VISIBILITY_RADIUS} of a player,
+ * but only becomes visible again once a little further away, so that visibility does
+ * not flap at the edge. Spectators are rechecked and their visibility updated at most
+ * once per tick.
+ */
+public class SpectatorVisibility
+{
+	// columns are 16 blocks wide, wider than the larger radius
+	private static final int CELL_SHIFT = 4;
+
+	private static final double ENTER_RADIUS = SpectatorListener.SPECTATOR_VISIBILITY_RADIUS;
+	private static final double LEAVE_RADIUS = ENTER_RADIUS + 2.0;
+
+	private final AutoRefMatch match;
+
+	// names of everyone in the match world, by column
+	private final Map<Long, Set<String>> grid = Maps.newHashMap();
+	private final Map<String, Long> cells = Maps.newHashMap();
+
+	// spectators to be rechecked on the next tick
+	private final Set<String> pending = Sets.newHashSet();
+	private BukkitRunnable flushTask = null;
+
+	// reused to avoid allocating a location for every comparison
+	private final Location loc = new Location(null, 0, 0, 0);
+
+	SpectatorVisibility(AutoRefMatch match)
+	{ this.match = match; }
+
+	private static long cellKey(int cx, int cz)
+	{ return ((long) cx << 32) | (cz & 0xFFFFFFFFL); }
+
+	/**
+	 * Records that a player or spectator has moved.
+	 *
+	 * @param player player who moved
+	 * @param to new location
+	 */
+	public void move(Player player, Location to)
+	{
+		String name = player.getName();
+		int cx = to.getBlockX() >> CELL_SHIFT, cz = to.getBlockZ() >> CELL_SHIFT;
+
+		Long cell = cellKey(cx, cz);
+		Long prev = cells.put(name, cell);
+		if (!cell.equals(prev))
+		{
+			if (prev != null) removeFromCell(prev, name);
+			Set<String> names = grid.get(cell);
+			if (names == null) grid.put(cell, names = Sets.newHashSet());
+			names.add(name);
+		}
+
+		// a player moving may bring them closer to (or further from) nearby spectators
+		if (match.isPlayer(player))
+		{
+			for (int dx = -1; dx <= 1; ++dx) for (int dz = -1; dz <= 1; ++dz)
+			{
+				Set<String> names = grid.get(cellKey(cx + dx, cz + dz));
+				if (names != null) pending.addAll(names);
+			}
+		}
+		else if (match.isSpectator(player)) pending.add(name);
+		else return;
+
+		scheduleFlush();
+	}
+
+	/**
+	 * Stops tracking a player, such as when they leave the match.
+	 *
+	 * @param name name of the player
+	 */
+	public void remove(String name)
+	{
+		Long cell = cells.remove(name);
+		if (cell != null) removeFromCell(cell, name);
+		pending.remove(name);
+	}
+
+	private void removeFromCell(Long cell, String name)
+	{
+		Set<String> names = grid.get(cell);
+		if (names == null) return;
+
+		names.remove(name);
+		if (names.isEmpty()) grid.remove(cell);
+	}
+
+	private void scheduleFlush()
+	{
+		if (flushTask != null) return;
+		flushTask = new BukkitRunnable()
+		{
+			@Override
+			public void run()
+			{ flushTask = null; flush(); }
+		};
+		flushTask.runTask(AutoReferee.getInstance());
+	}
+
+	/**
+	 * Rechecks every spectator who may have changed visibility, and updates visibility
+	 * for those who have.
+	 */
+	void flush()
+	{
+		World world = match.getWorld();
+		Set<Player> changed = Sets.newHashSet();
+		for (String name : pending)
+		{
+			Player player = Bukkit.getPlayerExact(name);
+			if (player == null || player.getWorld() != world || match.isPlayer(player)) continue;
+
+			AutoRefSpectator spec = match.getSpectator(player);
+			if (spec == null) continue;
+
+			// once invisible, stay invisible until a little further away
+			double radius = spec.isInvisible() ? LEAVE_RADIUS : ENTER_RADIUS;
+			boolean vis = nearestPlayer(player.getLocation()) <= radius * radius;
+
+			if (vis != spec.isInvisible()) { spec.setInvisible(vis); changed.add(player); }
+		}
+		pending.clear();
+
+		for (Player player : changed) match.setupVisibility(player);
+	}
+
+	// squared distance to the nearest match player in the neighbouring columns
+	private double nearestPlayer(Location from)
+	{
+		World world = from.getWorld();
+		int cx = from.getBlockX() >> CELL_SHIFT, cz = from.getBlockZ() >> CELL_SHIFT;
+
+		double best = Double.MAX_VALUE;
+		for (int dx = -1; dx <= 1; ++dx) for (int dz = -1; dz <= 1; ++dz)
+		{
+			Long cell = cellKey(cx + dx, cz + dz);
+			Set<String> names = grid.get(cell);
+			if (names == null) continue;
+
+			for (String name : Lists.newArrayList(names))
+			{
+				Player player = Bukkit.getPlayerExact(name);
+				if (player == null || player.getWorld() != world)
+				{ cells.remove(name); removeFromCell(cell, name); continue; }
+				if (!match.isPlayer(player) || player.isDead()) continue;
+
+				player.getLocation(loc);
+				double dist = loc.distanceSquared(from);
+				if (dist < best) best = dist;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,178 @@
+package org.mctourney.autoreferee;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import org.mctourney.autoreferee.AutoRefMatch.TranscriptEvent;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Collects the transcript events for a match during a tick and announces them together
+ * on the next tick. Recipients are resolved once per visibility class, each recipient
+ * gets a single message per tick, and plain console logging is done on a background thread.
+ */
+class TranscriptDispatcher
+{
+	// shared by all matches, writes the transcript journals and console log in order
+	private static ExecutorService background = newBackground();
+
+	private static ExecutorService newBackground()
+	{
+		return Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+			.setNameFormat("AutoReferee-transcript").setDaemon(true).build());
+	}
+
+	/**
+	 * Runs a task on the background transcript thread, after all previously queued tasks.
+	 *
+	 * @param task logging or journal task
+	 */
+	static synchronized void runInBackground(Runnable task)
+	{
+		if (background.isShutdown()) background = newBackground();
+		background.execute(task);
+	}
+
+	/**
+	 * Waits for all previously queued logging and journal tasks to finish. Must not be
+	 * called from the background thread itself.
+	 */
+	static void awaitBackground()
+	{
+		FutureTask<Void> marker = new FutureTask<Void>(new Runnable() { public void run() {  } }, null);
+		runInBackground(marker);
+
+		try { marker.get(); }
+		catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+		catch (ExecutionException e) {  }
+	}
+
+	/**
+	 * Waits for queued logging and journal tasks to finish, then stops the background thread.
+	 */
+	static synchronized void shutdown()
+	{
+		background.shutdown();
+		try { background.awaitTermination(5L, TimeUnit.SECONDS); }
+		catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+	}
+
+	private final AutoRefMatch match;
+
+	// events waiting to be announced on the next tick
+	private List<TranscriptEvent> pending = Lists.newArrayList();
+	private BukkitRunnable flushTask = null;
+
+	TranscriptDispatcher(AutoRefMatch match)
+	{ this.match = match; }
+
+	/**
+	 * Queues an event to be announced on the next tick. Must be called from the main thread.
+	 *
+	 * @param event transcript event
+	 */
+	void dispatch(TranscriptEvent event)
+	{
+		pending.add(event);
+		if (flushTask == null)
+		{
+			flushTask = new BukkitRunnable()
+			{
+				@Override
+				public void run()
+				{ flushTask = null; flush(); }
+			};
+			flushTask.runTask(AutoReferee.getInstance());
+		}
+	}
+
+	/**
+	 * Announces all queued events immediately. Must be called from the main thread.
+	 */
+	void flush()
+	{
+		if (pending.isEmpty()) return;
+		List<TranscriptEvent> events = pending;
+		pending = Lists.newArrayList();
+
+		// messages for each recipient, in the order the events happened
+		Map<Player, List<String>> messages = Maps.newLinkedHashMap();
+		Collection<Player> referees = null, everyone = null;
+		Map<AutoRefTeam, Set<Player>> teams = Maps.newHashMap();
+
+		final List<String> log = Lists.newArrayListWithCapacity(events.size());
+		for (TranscriptEvent event : events)
+		{
+			Collection<Player> recipients = null;
+			switch (event.getType().getVisibility())
+			{
+				case REFEREES:
+					if (referees == null) referees = match.getReferees(false);
+					recipients = referees; break;
+
+				case TEAM:
+					recipients = Sets.newHashSet();
+					for (AutoRefPlayer apl : event.getPlayerActors())
+						if (apl.getTeam() != null) recipients.addAll(getTeamPlayers(apl.getTeam(), teams));
+					break;
+
+				case ALL:
+					if (everyone == null) everyone = match.getWorld().getPlayers();
+					recipients = everyone; break;
+
+				case NONE: default: break;
+			}
+
+			String message = event.getColoredMessage();
+			if (recipients != null) for (Player player : recipients)
+			{
+				List<String> lines = messages.get(player);
+				if (lines == null) messages.put(player, lines = Lists.newArrayListWithCapacity(2));
+				lines.add(message);
+			}
+			log.add(event.toString());
+		}
+
+		for (Map.Entry<Player, List<String>> e : messages.entrySet())
+			e.getKey().sendMessage(e.getValue().toArray(new String[e.getValue().size()]));
+
+		AutoReferee plugin = AutoReferee.getInstance();
+		if (!plugin.isConsoleLoggingEnabled()) return;
+
+		// the console sender is part of the Bukkit API, so colored output stays on this thread
+		if (plugin.isColoredConsoleLoggingEnabled())
+			for (String line : log) Bukkit.getConsoleSender().sendMessage("[AR] " + line);
+		else runInBackground(new Runnable()
+		{
+			public void run()
+			{ for (String line : log) AutoReferee.log(line); }
+		});
+	}
+
+	private static Set<Player> getTeamPlayers(AutoRefTeam team, Map<AutoRefTeam, Set<Player>> cache)
+	{
+		Set<Player> players = cache.get(team);
+		if (players == null)
+		{
+			cache.put(team, players = Sets.newHashSet());
+			for (AutoRefPlayer apl : team.getPlayers())
+				if (apl.getPlayer() != null) players.add(apl.getPlayer());
+		}
+		return players;
+	}
+}
@@ -0,0 +1,241 @@
+package org.mctourney.autoreferee;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.bukkit.Location;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import org.mctourney.autoreferee.AutoRefMatch.TranscriptEvent;
+import org.mctourney.autoreferee.util.BlockData;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * Match transcript, appended to a newline-delimited JSON file in the world folder as
+ * events happen. Only the most recent events are kept in memory; the full transcript
+ * is read back from the journal when it is needed.
+ */
+public class TranscriptJournal
+{
+	/**
+	 * Name of the journal file, relative to the world folder.
+	 */
+	public static final String FILENAME = "transcript.jsonl";
+
+	// number of recent events kept in memory
+	private static final int WINDOW_SIZE = 200;
+
+	private static final String CHARSET = "UTF-8";
+
+	/**
+	 * Receives transcript events as they are read back from the journal.
+	 */
+	public interface Visitor
+	{
+		public void visit(TranscriptEvent event) throws IOException;
+	}
+
+	// one line of the journal
+	private static class Record
+	{
+		String type, message;
+		double x, y, z;
+		long time;
+
+		// player names and packed block data keys, see BlockData.toKey()
+		List<String> players;
+		List<Integer> blocks;
+	}
+
+	private final AutoRefMatch match;
+	private final File file;
+	private final Gson gson = new Gson();
+
+	// only used on the background transcript thread once the journal is open
+	private Writer writer = null;
+	private volatile boolean failed = false;
+
+	private final LinkedList<TranscriptEvent> window = Lists.newLinkedList();
+
+	/**
+	 * Starts a new journal for a match. A journal left behind by an earlier match in
+	 * this world (for instance, after a crash) is kept alongside as a backup.
+	 *
+	 * @param match match this transcript belongs to
+	 */
+	public TranscriptJournal(AutoRefMatch match)
+	{
+		this.match = match;
+		this.file = new File(match.getWorld().getWorldFolder(), FILENAME);
+
+		try
+		{
+			File backup = new File(file.getPath() + ".1");
+			if (file.exists())
+			{
+				FileUtils.deleteQuietly(backup);
+				FileUtils.moveFile(file, backup);
+			}
+
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), CHARSET));
+		}
+		catch (IOException e) { fail(e); }
+	}
+
+	/**
+	 * Gets the journal file.
+	 *
+	 * @return journal file
+	 */
+	public File getFile()
+	{ return file; }
+
+	/**
+	 * Adds an event to the window of recent events, and queues it to be appended to the
+	 * journal in the background. The journal is flushed after every event, so it
+	 * survives the server going down.
+	 *
+	 * @param event transcript event
+	 */
+	public void append(TranscriptEvent event)
+	{
+		synchronized (this)
+		{
+			window.addLast(event);
+			if (window.size() > WINDOW_SIZE) window.removeFirst();
+		}
+
+		final Record record = toRecord(event);
+		TranscriptDispatcher.runInBackground(new Runnable()
+		{
+			public void run()
+			{
+				if (writer != null) try
+				{
+					writer.write(gson.toJson(record));
+					writer.write('\n');
+					writer.flush();
+				}
+				catch (IOException e) { fail(e); }
+			}
+		});
+	}
+
+	/**
+	 * Gets the most recent events in the transcript.
+	 *
+	 * @return copy of the recent events, oldest first
+	 */
+	public synchronized List<TranscriptEvent> getRecent()
+	{ return Lists.newArrayList(window); }
+
+	/**
+	 * Reads back the entire transcript, one event at a time. If the journal could not be
+	 * written, only the recent events are available.
+	 *
+	 * @param visitor receives each event, oldest first
+	 * @throws IOException if the journal cannot be read, or the visitor fails
+	 */
+	public void replay(Visitor visitor) throws IOException
+	{
+		// make sure every event appended so far has been written
+		TranscriptDispatcher.awaitBackground();
+		if (failed || !file.exists())
+		{
+			for (TranscriptEvent event : getRecent()) visitor.visit(event);
+			return;
+		}
+
+		// players may have left their teams, so look them up among every known player
+		Map<String, AutoRefPlayer> players = Maps.newHashMap();
+		for (AutoRefPlayer apl : match.getCachedPlayers())
+			players.put(apl.getName().toLowerCase(), apl);
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+		try
+		{
+			String line; while ((line = reader.readLine()) != null)
+			{
+				if (line.isEmpty()) continue;
+				try { visitor.visit(fromRecord(gson.fromJson(line, Record.class), players)); }
+				catch (JsonParseException e) {  } // partially-written line, skip it
+			}
+		}
+		finally { IOUtils.closeQuietly(reader); }
+	}
+
+	/**
+	 * Closes the journal. Events appended afterwards are only kept in memory.
+	 */
+	public void close()
+	{
+		TranscriptDispatcher.runInBackground(new Runnable()
+		{
+			public void run()
+			{ IOUtils.closeQuietly(writer); writer = null; }
+		});
+	}
+
+	private void fail(IOException e)
+	{
+		AutoReferee.log("Could not write transcript journal: " + e.getMessage(), Level.WARNING);
+		IOUtils.closeQuietly(writer);
+		writer = null; failed = true;
+	}
+
+	private static Record toRecord(TranscriptEvent event)
+	{
+		Record record = new Record();
+		record.type = event.getType().name();
+		record.message = event.getColoredMessage();
+		record.time = event.getSeconds();
+
+		Location loc = event.getLocation();
+		record.x = loc.getX(); record.y = loc.getY(); record.z = loc.getZ();
+
+		record.players = Lists.newArrayList();
+		record.blocks = Lists.newArrayList();
+		for (Object actor : event.getActors())
+		{
+			if (actor instanceof AutoRefPlayer) record.players.add(((AutoRefPlayer) actor).getName());
+			if (actor instanceof BlockData) record.blocks.add(((BlockData) actor).toKey());
+		}
+		return record;
+	}
+
+	private TranscriptEvent fromRecord(Record record, Map<String, AutoRefPlayer> players)
+	{
+		List<Object> actors = Lists.newArrayList();
+		if (record.players != null) for (String name : record.players)
+		{
+			AutoRefPlayer apl = players.get(name.toLowerCase());
+			if (apl != null) actors.add(apl);
+		}
+		if (record.blocks != null) for (Integer key : record.blocks)
+			actors.add(BlockData.fromKey(key));
+
+		TranscriptEvent.EventType type;
+		try { type = TranscriptEvent.EventType.valueOf(record.type); }
+		catch (Exception e) { throw new JsonParseException("Unknown event type: " + record.type); }
+
+		Location loc = new Location(match.getWorld(), record.x, record.y, record.z);
+		return new TranscriptEvent(type, record.message, loc, record.time, actors);
+	}
+}
@@ -0,0 +1,154 @@
+package org.mctourney.autoreferee;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Loads and saves map configuration files. Parsed configurations are cached by the
+ * checksum of the file, so loading another match on the same version of a map reuses
+ * the parsed document instead of parsing it again. Saves are written in the background,
+ * and repeated saves of the same file within {@link #SAVE_DELAY_MS} are written once.
+ */
+class WorldConfigStore
+{
+	private static final long SAVE_DELAY_MS = 2000L;
+
+	// parsed configurations by checksum, never modified once cached
+	private static final Cache<String, Document> parsed =
+		CacheBuilder.newBuilder().maximumSize(32).build();
+
+	// latest configuration waiting to be written for each file
+	private static final ConcurrentMap<File, Element> pending = Maps.newConcurrentMap();
+
+	private static ScheduledExecutorService writer = newWriter();
+
+	// held while writing, so that a file is never written by two threads at once
+	private static final Object writeLock = new Object();
+
+	private static ScheduledExecutorService newWriter()
+	{
+		return Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+			.setNameFormat("AutoReferee-config").setDaemon(true).build());
+	}
+
+	/**
+	 * Loads a map configuration file. Any save still waiting to be written for this
+	 * file is written first.
+	 *
+	 * @param file configuration file
+	 * @return root element of the configuration, a copy which the caller may modify
+	 * @throws IOException if the file cannot be read
+	 * @throws JDOMException if the file cannot be parsed
+	 */
+	static Element load(File file) throws IOException, JDOMException
+	{
+		flush(file);
+
+		byte[] data = FileUtils.readFileToByteArray(file);
+		String md5 = DigestUtils.md5Hex(data);
+
+		Document doc = parsed.getIfPresent(md5);
+		if (doc == null)
+		{
+			doc = new SAXBuilder().build(new ByteArrayInputStream(data));
+			parsed.put(md5, doc);
+		}
+		return doc.getRootElement().clone();
+	}
+
+	/**
+	 * Queues a map configuration to be written. The configuration should not be
+	 * modified afterwards.
+	 *
+	 * @param file configuration file
+	 * @param config root element of the configuration
+	 */
+	static synchronized void save(final File file, Element config)
+	{
+		// if a save is already waiting, it will pick up this configuration instead
+		if (pending.put(file, config) != null) return;
+
+		if (writer.isShutdown()) writer = newWriter();
+		writer.schedule(new Runnable()
+		{
+			public void run()
+			{ write(file); }
+		}, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Writes the save waiting for a file, if there is one, without waiting for the delay.
+	 *
+	 * @param file configuration file
+	 */
+	static void flush(File file)
+	{ write(file); }
+
+	/**
+	 * Writes any saves which are still waiting, without waiting for the delay.
+	 */
+	static void flush()
+	{ for (File file : pending.keySet()) write(file); }
+
+	/**
+	 * Writes all waiting saves, then stops the background writer.
+	 */
+	static synchronized void shutdown()
+	{
+		flush();
+		writer.shutdownNow();
+	}
+
+	private static void write(File file)
+	{
+		synchronized (writeLock)
+		{
+			Element config = pending.remove(file);
+			if (config != null) write(file, config);
+		}
+	}
+
+	private static void write(File file, Element config)
+	{
+		// the world may have been deleted since this was saved
+		if (!file.getParentFile().exists()) return;
+
+		// write to a temporary file first, so a failed write can't truncate the config
+		File temp = new File(file.getPath() + ".tmp");
+		OutputStream out = null;
+		try
+		{
+			out = new FileOutputStream(temp);
+			new XMLOutputter(Format.getPrettyFormat()).output(config, out);
+			out.close(); out = null;
+
+			if (file.exists() && !file.delete()) throw new IOException("Could not replace " + file);
+			if (!temp.renameTo(file)) throw new IOException("Could not rename " + temp);
+		}
+		catch (IOException e)
+		{ AutoReferee.log("Could not save world config: " + file.getParentFile().getName()); }
+		finally { IOUtils.closeQuietly(out); }
+	}
+}
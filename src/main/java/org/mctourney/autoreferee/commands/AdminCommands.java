@@ -1,6 +1,8 @@
 package org.mctourney.autoreferee.commands;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -21,6 +23,7 @@ import org.mctourney.autoreferee.AutoRefTeam;
 import org.mctourney.autoreferee.AutoReferee;
 import org.mctourney.autoreferee.event.match.MatchUnloadEvent;
 import org.mctourney.autoreferee.event.player.PlayerTeamJoinEvent.Reason;
+import org.mctourney.autoreferee.util.Profiler;
 import org.mctourney.autoreferee.util.commands.AutoRefCommand;
 import org.mctourney.autoreferee.util.commands.AutoRefPermission;
 import org.mctourney.autoreferee.util.commands.CommandHandler;
@@ -262,6 +265,67 @@ public class AdminCommands implements CommandHandler
 		return true;
 	}
 
+	// number of handlers and tasks to show for each match
+	private static final int PROFILE_TOP = 8;
+
+	@AutoRefCommand(name={"autoref", "profile"}, argmax=1, options="a",
+		description="Times event handlers and tasks, to find what is slowing down a match. Shows the slowest handlers and tasks, or turns profiling on or off, clears the timings, or saves them to a file.",
+		usage="<command> [on|off|reset|dump]",
+		opthelp=
+		{
+			"a", "show timings for all matches",
+		})
+	@AutoRefPermission(console=true, nodes={"autoreferee.admin"})
+
+	public boolean profile(CommandSender sender, AutoRefMatch match, String[] args, CommandLine options)
+	{
+		String action = args.length == 0 ? "" : args[0].toLowerCase();
+		if ("on".equals(action) || "off".equals(action))
+		{
+			Profiler.setEnabled("on".equals(action));
+			sender.sendMessage("Profiling is now " +
+				(Profiler.isEnabled() ? ChatColor.GREEN + "on" : ChatColor.RED + "off"));
+		}
+		else if ("reset".equals(action))
+		{
+			Profiler.reset();
+			sender.sendMessage(ChatColor.GREEN + "Profiler timings cleared.");
+		}
+		else if ("dump".equals(action))
+		{
+			File file = new File(plugin.getDataFolder(),
+				"profile-" + (System.currentTimeMillis() / 1000L) + ".txt");
+			try
+			{
+				Profiler.dump(file);
+				sender.sendMessage(ChatColor.GREEN + "Profiler timings saved to " + file.getName());
+			}
+			catch (IOException e)
+			{ sender.sendMessage(ChatColor.RED + "Could not save profiler timings."); }
+		}
+		else if (action.isEmpty())
+		{
+			if (!Profiler.isEnabled()) sender.sendMessage(ChatColor.GRAY +
+				"Profiling is off. Use /autoref profile on to start timing.");
+
+			Collection<String> scopes = options.hasOption('a') || match == null ? Profiler.getScopes()
+				: Lists.newArrayList(match.getWorld().getName(), Profiler.GLOBAL);
+
+			for (String scope : scopes)
+			{
+				List<Profiler.Timing> timings = Profiler.getTimings(scope);
+				if (timings.isEmpty()) continue;
+
+				sender.sendMessage(ChatColor.GOLD + (Profiler.GLOBAL.equals(scope) ? "Server" : scope) + ":");
+				for (Profiler.Timing timing : timings.subList(0, Math.min(PROFILE_TOP, timings.size())))
+					sender.sendMessage("  " + timing);
+			}
+		}
+		else return false;
+
+		return true;
+	}
+
 	@AutoRefCommand(name={"autoref", "pmsend"}, argmin=1,
 		description="Send plugin message (for debugging client mods).",
 		usage="<command> <plugin message>")
@@ -404,7 +404,7 @@ public class ConfigurationCommands implements CommandHandler
 		{
 			double newHeight = Double.parseDouble(args[0]);
 			for (CuboidRegion creg : match.getRegions(CuboidRegion.class))
-				if (creg.y2 > newHeight) creg.y2 = newHeight;
+				if (creg.y2 > newHeight) { creg.y2 = newHeight; match.updateRegion(creg); }
 		}
 		catch (NumberFormatException e)
 		{ sender.sendMessage(ChatColor.RED + args[0] + " is not a valid height."); }
@@ -73,7 +73,7 @@ public class PracticeCommands implements CommandHandler, Listener
 				String target = options.getOptionValue('t');
 				if (target != null && !target.isEmpty())
 				{
-					AutoRefPlayer apl = match.getPlayer(target);
+					AutoRefPlayer apl = match.findPlayer(target);
 					if (apl != null) player.teleport(apl.getLocation());
 				}
 				// if no player is specified, show teleport menu
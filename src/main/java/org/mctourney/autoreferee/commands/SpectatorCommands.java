@@ -77,7 +77,7 @@ public class SpectatorCommands implements CommandHandler
 		if (match == null) return false;
 
 		Player player = (Player) sender;
-		AutoRefPlayer target = args.length > 0 ? match.getPlayer(args[0])
+		AutoRefPlayer target = args.length > 0 ? match.findPlayer(args[0])
 			: match.getNearestPlayer(player.getLocation());
 
 		// if there is a target, show an inventory
@@ -119,7 +119,7 @@ public class SpectatorCommands implements CommandHandler
 
 		if (options.hasOption('b'))
 		{
-			AutoRefPlayer apl = match.getPlayer(options.getOptionValue('b'));
+			AutoRefPlayer apl = match.findPlayer(options.getOptionValue('b'));
 			Location bedloc = apl == null ? null : apl.getBedLocation();
 			if (bedloc == null)
 			{
@@ -130,7 +130,7 @@ public class SpectatorCommands implements CommandHandler
 		}
 		else if (options.hasOption('d'))
 		{
-			AutoRefPlayer apl = match.getPlayer(options.getOptionValue('d'));
+			AutoRefPlayer apl = match.findPlayer(options.getOptionValue('d'));
 			if (apl != null) tplocation = apl.getLastDeathLocation();
 			else tplocation = match.getLastDeathLocation();
 
@@ -139,14 +139,14 @@ public class SpectatorCommands implements CommandHandler
 		}
 		else if (options.hasOption('l'))
 		{
-			AutoRefPlayer apl = match.getPlayer(options.getOptionValue('l'));
+			AutoRefPlayer apl = match.findPlayer(options.getOptionValue('l'));
 			if (apl != null) tplocation = apl.getLastLogoutLocation();
 			else tplocation = match.getLastLogoutLocation();
 			tplocation = TeleportationUtil.locationTeleport(tplocation);
 		}
 		else if (options.hasOption('t'))
 		{
-			AutoRefPlayer apl = match.getPlayer(options.getOptionValue('t'));
+			AutoRefPlayer apl = match.findPlayer(options.getOptionValue('t'));
 			if (apl != null) tplocation = apl.getLastTeleportLocation();
 			else tplocation = match.getLastTeleportLocation();
 			tplocation = TeleportationUtil.locationTeleport(tplocation);
@@ -329,7 +329,7 @@ public class SpectatorCommands implements CommandHandler
 		if (kit == null) { sender.sendMessage("Not a valid kit: " + args[0]); return true; }
 
 		// get the receiver
-		AutoRefPlayer apl = match.getPlayer(args[1]);
+		AutoRefPlayer apl = match.findPlayer(args[1]);
 		if (apl == null) { sender.sendMessage("Not a valid player: " + args[1]); return true; }
 
 		kit.giveTo(apl);
@@ -485,8 +485,8 @@ public class SpectatorCommands implements CommandHandler
 		return match != null;
 	}
 
-	@AutoRefCommand(name={"autoref", "exhaust"}, argmax=1,
-			description="Check if a team is completly out of any goal blocks.",
+	@AutoRefCommand(name={"autoref", "exhaust"}, argmax=1, options="c",
+			description="Check if a team is completly out of any goal blocks. Use -c to stop a running search.",
 			usage="<command> [team]")
 	@AutoRefPermission(console=true, role=AutoRefMatch.Role.REFEREE)
 
@@ -501,6 +501,25 @@ public class SpectatorCommands implements CommandHandler
 		if (args.length > 0)
 		{
 			AutoRefTeam team = match.getTeam(args[0]);
+			if (team == null)
+			{
+				sender.sendMessage(ChatColor.RED + "Unknown team: " + args[0]);
+				return true;
+			}
+
+			if (options.hasOption('c'))
+			{
+				if (!ObjectiveExhaustion.cancelSearch(team, "cancelled by " + sender.getName()))
+					sender.sendMessage(ChatColor.RED + "No search is running for " + team.getDisplayName());
+				return true;
+			}
+
+			if (ObjectiveExhaustion.isSearching(team))
+			{
+				sender.sendMessage(ChatColor.RED + "A search is already running for " + team.getDisplayName());
+				return true;
+			}
+
 			Set<BlockData> searching = ObjectiveExhaustion.startSearch(team, plugin);
 			if (searching != null && !searching.isEmpty())
 			{
@@ -1,5 +1,7 @@
 package org.mctourney.autoreferee.goals;
 
+import java.util.BitSet;
+
 import org.bukkit.Location;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
@@ -117,9 +119,62 @@ public class BlockGoal extends AutoRefGoal
 		return elt;
 	}
 
+	// positions within range of the target which currently hold the objective block
+	private BitSet present = null;
+
 	@Override
 	public boolean isSatisfied(AutoRefMatch match)
-	{ return null != blockInRange(blockdata, loc, range); }
+	{
+		if (present == null) rescan();
+		return !present.isEmpty();
+	}
+
+	private int side()
+	{ return 2 * range + 1; }
+
+	private int offset(int x, int y, int z)
+	{
+		int side = side();
+		return ((x - loc.getBlockX() + range) * side
+			+ (y - loc.getBlockY() + range)) * side + (z - loc.getBlockZ() + range);
+	}
+
+	/**
+	 * Updates the tracked state of a single block. Blocks out of range of the target
+	 * are ignored.
+	 *
+	 * @param block block that has changed
+	 */
+	public void blockChanged(Block block)
+	{
+		if (present == null || !isAffectedBy(block.getLocation())) return;
+		present.set(offset(block.getX(), block.getY(), block.getZ()), blockdata.matchesBlock(block));
+	}
+
+	/**
+	 * Rescans every block within range of the target.
+	 *
+	 * @return true if the tracked state was already correct, otherwise false
+	 */
+	public boolean rescan()
+	{
+		BitSet found = new BitSet();
+		Block b = loc.getBlock();
+
+		int h = loc.getWorld().getMaxHeight();
+		int by = loc.getBlockY();
+
+		for (int x = -range; x <= range; ++x)
+		for (int y = -range; y <= range; ++y) if (by + y >= 0 && by + y < h)
+		for (int z = -range; z <= range; ++z)
+		{
+			Block rel = b.getRelative(x, y, z);
+			if (blockdata.matchesBlock(rel)) found.set(offset(rel.getX(), rel.getY(), rel.getZ()));
+		}
+
+		boolean consistent = present == null || present.equals(found);
+		present = found; return consistent;
+	}
 
 	@Override
 	public double getScore(AutoRefMatch match)
@@ -193,6 +248,20 @@ public class BlockGoal extends AutoRefGoal
 		return String.format("%s @ %s", nm, LocationUtil.toBlockCoords(loc));
 	}
 
+	/**
+	 * Checks if a change at the given location could affect whether this goal is satisfied.
+	 *
+	 * @param l location of the change
+	 * @return true if location is within range of the target, otherwise false
+	 */
+	public boolean isAffectedBy(Location l)
+	{
+		return l != null && l.getWorld() == loc.getWorld()
+			&& Math.abs(l.getBlockX() - loc.getBlockX()) <= range
+			&& Math.abs(l.getBlockY() - loc.getBlockY()) <= range
+			&& Math.abs(l.getBlockZ() - loc.getBlockZ()) <= range;
+	}
+
 	/**
 	 * Gets the maximum range this objective may be placed from its target.
 	 */
@@ -2,12 +2,12 @@ package org.mctourney.autoreferee.listeners;
 
 import java.lang.management.ManagementFactory;
 import java.util.Map;
-import java.util.WeakHashMap;
 
 import org.bukkit.block.Block;
 import org.bukkit.entity.Arrow;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Fireball;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile;
@@ -23,6 +23,7 @@ import org.bukkit.event.entity.EntityShootBowEvent;
 import org.bukkit.event.entity.ExplosionPrimeEvent;
 import org.bukkit.event.entity.FoodLevelChangeEvent;
 import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.entity.ProjectileLaunchEvent;
 import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.ChatColor;
@@ -32,6 +33,7 @@ import org.bukkit.Material;
 import org.mctourney.autoreferee.AutoRefMatch;
 import org.mctourney.autoreferee.AutoRefPlayer;
 import org.mctourney.autoreferee.AutoReferee;
+import org.mctourney.autoreferee.event.match.MatchUnloadEvent;
 import org.mctourney.autoreferee.regions.AutoRefRegion.Flag;
 import org.mctourney.autoreferee.util.AchievementPoints;
 import org.mctourney.autoreferee.util.SportBukkitUtil;
@@ -45,9 +47,6 @@ public class CombatListener implements Listener
 
 	AutoReferee plugin = null;
 
-	private Map<Location, AutoRefPlayer> tntPropagation = Maps.newHashMap();
-
-	private Map<Projectile, Location> shotArrows = new WeakHashMap<Projectile, Location>();
 	private Map<AutoRefPlayer, Long> lastPigmenAggro = Maps.newHashMap();
 
 	public CombatListener(Plugin p)
@@ -97,7 +96,7 @@ public class CombatListener implements Listener
 				}
 
 				if (ed.getDamager() instanceof Projectile)
-					locKiller = shotArrows.get(ed.getDamager());
+					locKiller = match.getAttributionTracker().getOrigin(ed.getDamager());
 			}
 
 			// update the death message with the changes
@@ -190,7 +189,7 @@ public class CombatListener implements Listener
 				if (arrow.getShooter().getType() == EntityType.PLAYER)
 				{
 					AutoRefPlayer shooter = match.getPlayer((Player) arrow.getShooter());
-					Location shotFrom = shotArrows.get(arrow);
+					Location shotFrom = match.getAttributionTracker().getOrigin(arrow);
 
 					if (shooter != null && shotFrom != null)
 						shooter.setFurthestShot(arrow.getLocation().distance(shotFrom));
@@ -322,8 +321,24 @@ public class CombatListener implements Listener
 		AutoRefPlayer apl = match.getPlayer(player);
 		if (apl != null) apl.incrementShotsFired();
 
-		shotArrows.put((Projectile) event.getProjectile(),
-			event.getEntity().getLocation().clone());
+		match.getAttributionTracker().setOrigin(event.getProjectile(),
+			apl, event.getEntity().getLocation());
+	}
+
+	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
+	public void fireballLaunch(ProjectileLaunchEvent event)
+	{
+		if (!(event.getEntity() instanceof Fireball)) return;
+		AutoRefMatch match = plugin.getMatch(event.getEntity().getWorld());
+		if (match == null) return;
+
+		// fireballs launched by a player belong to that player
+		LivingEntity shooter = event.getEntity().getShooter();
+		if (shooter instanceof Player)
+		{
+			AutoRefPlayer apl = match.getPlayer((Player) shooter);
+			if (apl != null) match.getAttributionTracker().setOwner(event.getEntity(), apl);
+		}
 	}
 
 	@EventHandler(priority=EventPriority.HIGHEST)
@@ -342,13 +357,14 @@ public class CombatListener implements Listener
 
 		if (event.getEntityType() == EntityType.PRIMED_TNT)
 		{
-			Location tntLocation = event.getEntity().getLocation().getBlock().getLocation();
-			AutoRefPlayer apl = tntPropagation.remove(tntLocation);
+			Block tntBlock = event.getEntity().getLocation().getBlock();
+			AutoRefPlayer apl = match.getAttributionTracker().takePropagation(tntBlock);
 
 			// if there was no propagation chain
 			if (apl == null)
 			{
 				// try to determine if this was the first tnt in a chain
+				Location tntLocation = tntBlock.getLocation();
 				if ((apl = match.getNearestPlayer(tntLocation)) == null) return;
 
 				Location plLocation = apl.getLocation();
@@ -356,17 +372,25 @@ public class CombatListener implements Listener
 			}
 
 			// add an owner for this tnt object
-			if (apl != null) plugin.setTNTOwner(event.getEntity(), apl);
+			if (apl != null) match.getAttributionTracker().setOwner(event.getEntity(), apl);
 		}
 	}
 
 	@EventHandler(priority=EventPriority.MONITOR)
 	public void entityExplode(EntityExplodeEvent event)
 	{
+		if (event.getEntity() == null) return;
+		AutoRefMatch match = plugin.getMatch(event.getEntity().getWorld());
+		if (match == null) return;
+
 		// remove this entity from the table if present
-		AutoRefPlayer apl = plugin.clearTNTOwner(event.getEntity());
+		AutoRefPlayer apl = match.getAttributionTracker().clear(event.getEntity());
 
 		if (apl != null) for (Block b : event.blockList())
-			if (b.getType() == Material.TNT) tntPropagation.put(b.getLocation(), apl);
+			if (b.getType() == Material.TNT) match.getAttributionTracker().propagate(b, apl);
 	}
+
+	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
+	public void matchUnload(MatchUnloadEvent event)
+	{ event.getMatch().getAttributionTracker().clear(); }
 }
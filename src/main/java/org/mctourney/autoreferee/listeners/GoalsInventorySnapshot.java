@@ -16,6 +16,7 @@ import org.bukkit.entity.Item;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.mctourney.autoreferee.util.BlockData;
+import org.mctourney.autoreferee.util.IntIntMap;
 
 @SuppressWarnings("serial")
 public class GoalsInventorySnapshot extends HashMap<BlockData, Integer>
@@ -25,52 +26,47 @@ public class GoalsInventorySnapshot extends HashMap<BlockData, Integer>
 		super();
 	}
 
+	public GoalsInventorySnapshot(GoalsInventorySnapshot other)
+	{
+		super(other);
+	}
+
 	public GoalsInventorySnapshot(ItemStack item, Set<BlockData> goals)
 	{
 		super();
-		BlockData target = BlockData.fromItemStack(item);
+		int key = BlockData.keyOf(item);
 		for (BlockData goal : goals)
-			if (goal.equals(target))
+			if (goal.matchesKey(key))
 				this.put(goal, item.getAmount());
 	}
 
 	public GoalsInventorySnapshot(ItemStack item, BlockData goal)
 	{
 		super();
-		if (goal.equals(BlockData.fromItemStack(item)))
+		if (goal.matchesKey(BlockData.keyOf(item)))
 			this.put(goal, item.getAmount());
 	}
 
 	public static GoalsInventorySnapshot fromItemsAndGoals(Collection<ItemStack> items, Set<BlockData> goals)
 	{
 		GoalsInventorySnapshot ret = new GoalsInventorySnapshot();
-		for (BlockData goal : goals)
-		{
-			int count = itemSum(goal, items);
-			ret.put(goal, count);
-		}
+		ret.putCounts(itemCounts(items.toArray(new ItemStack[items.size()])), goals);
 		return ret;
 	}
 
 	public GoalsInventorySnapshot(Inventory inv, Set<BlockData> goals)
 	{
 		super();
-		ItemStack[] contents = inv.getContents();
-		for (BlockData goal : goals)
-		{
-			int count = itemSum(goal, contents);
-			this.put(goal, count);
-		}
+		this.putCounts(itemCounts(inv.getContents()), goals);
 	}
 
 	public GoalsInventorySnapshot(Collection<Block> blocks, Set<BlockData> goals)
 	{
 		super();
-		for (BlockData goal : goals)
-		{
-			int count = blockCount(goal, blocks);
-			this.put(goal, count);
-		}
+		IntIntMap counts = new IntIntMap(blocks.size());
+		for (Block block : blocks)
+			addCount(counts, BlockData.keyOf(block), 1);
+		this.putCounts(counts, goals);
 	}
 
 	public GoalsInventorySnapshot(MapDifference<BlockData, Integer> diff)
@@ -149,41 +145,28 @@ public class GoalsInventorySnapshot extends HashMap<BlockData, Integer>
 		put(key, getInt(key) - value);
 	}
 
-	private static int itemSum(BlockData data, ItemStack[] items)
+	// counts are stored under both the exact key and the wildcard key for the material
+	private static void addCount(IntIntMap counts, int key, int amount)
 	{
-		int count = 0;
-		for (ItemStack it : items)
-		{
-			if (it == null) continue;
-			if (data.equals(BlockData.fromItemStack(it)))
-				count += it.getAmount();
-		}
-		return count;
+		counts.adjust(key, amount);
+		if (BlockData.wildcard(key) != key)
+			counts.adjust(BlockData.wildcard(key), amount);
 	}
 
-	private static int itemSum(BlockData data, Collection<ItemStack> items)
+	private static IntIntMap itemCounts(ItemStack[] items)
 	{
-		int count = 0;
+		IntIntMap counts = new IntIntMap(items.length);
 		for (ItemStack it : items)
-		{
-			if (it == null) continue;
-			if (data.equals(BlockData.fromItemStack(it)))
-				count += it.getAmount();
-		}
-		return count;
+			if (it != null) addCount(counts, BlockData.keyOf(it), it.getAmount());
+		return counts;
 	}
-	
-	private static int blockCount(BlockData data, Collection<Block> blocks)
+
+	private void putCounts(IntIntMap counts, Set<BlockData> goals)
 	{
-		int count = 0;
-		for (Block block : blocks)
-		{
-			if (data.matchesBlock(block))
-				count++;
-		}
-		return count;
+		for (BlockData goal : goals)
+			this.put(goal, counts.get(goal.toKey(), 0));
 	}
-	
+
 	public String toString()
 	{
 		if (this.isEmpty()) return "";
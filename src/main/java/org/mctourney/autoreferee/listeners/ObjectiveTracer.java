@@ -257,7 +257,7 @@ public class ObjectiveTracer implements Listener
 
 		for (BlockData b : apl.getTeam().getObjectives())
 		{
-			if (b.equals(item))
+			if (b.matches(item))
 			{
 				match.addEvent(new TranscriptEvent(match,
 						TranscriptEvent.EventType.OBJECTIVE_DETAIL, String.format(
@@ -334,7 +334,7 @@ public class ObjectiveTracer implements Listener
 
 		for (BlockData b : apl.getTeam().getObjectives())
 		{
-			if (b.equals(item))
+			if (b.matches(item))
 			{
 				GoalsInventorySnapshot snap = new GoalsInventorySnapshot(event.getItem().getItemStack(), b);
 				match.addEvent(new TranscriptEvent(match,
@@ -455,7 +455,7 @@ public class ObjectiveTracer implements Listener
 
 		for (BlockData goal : goals)
 		{
-			if (goal.equals(former))
+			if (goal.matches(former))
 			{
 				// process break
 				// TranscriptEvent.ObjectiveDetailType.BREAK_NONPLAYER
@@ -467,7 +467,7 @@ public class ObjectiveTracer implements Listener
 						LocationUtil.toBlockCoords(loc)), entity.getLocation(), goal
 				));
 			}
-			else if (goal.equals(after))
+			else if (goal.matches(after))
 			{
 				// process place
 				// TranscriptEvent.ObjectiveDetailType.PLACE
@@ -1,5 +1,6 @@
 package org.mctourney.autoreferee.listeners;
 
+import org.bukkit.GameMode;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Entity;
@@ -60,6 +61,9 @@ public class ObjectiveTracker implements Listener
 
 		if (match != null && apl != null)
 		{
+			// record the new block before checking goals
+			match.checkWinConditions(block.getLocation());
+
 			if (apl.getTeam() != null)
 				for (BlockGoal goal : apl.getTeam().getTeamGoals(BlockGoal.class))
 			{
@@ -74,7 +78,6 @@ public class ObjectiveTracker implements Listener
 					}
 				}
 			}
-			match.checkWinConditions();
 		}
 	}
 
@@ -114,13 +117,13 @@ public class ObjectiveTracker implements Listener
 	private void _checkWinConditions(BlockEvent event)
 	{
 		AutoRefMatch match = plugin.getMatch(event.getBlock().getWorld());
-		if (match != null) match.checkWinConditions();
+		if (match != null) match.checkWinConditions(event.getBlock().getLocation());
 	}
 
 	private void _checkWinConditions(EntityEvent event)
 	{
 		AutoRefMatch match = plugin.getMatch(event.getEntity().getWorld());
-		if (match != null) match.checkWinConditions();
+		if (match != null) match.checkWinConditions(event.getEntity().getLocation());
 	}
 
 	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
@@ -143,8 +146,8 @@ public class ObjectiveTracker implements Listener
 			for (CoreGoal goal : team.getTeamGoals(CoreGoal.class))
 				goal.checkSatisfied(event);
 
-		// typical win condition check as well
-		_checkWinConditions(event);
+		// the liquid changes the block it is flowing into
+		if (match != null) match.checkWinConditions(event.getToBlock().getLocation());
 	}
 
 	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
@@ -161,11 +164,19 @@ public class ObjectiveTracker implements Listener
 
 	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
 	public void checkWinConditions(BlockPistonExtendEvent event)
-	{ _checkWinConditions(event); }
+	{
+		// pistons move blocks away from the event location, so check everything
+		AutoRefMatch match = plugin.getMatch(event.getBlock().getWorld());
+		if (match != null) match.checkWinConditions();
+	}
 
 	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
 	public void checkWinConditions(BlockPistonRetractEvent event)
-	{ _checkWinConditions(event); }
+	{
+		// pistons move blocks away from the event location, so check everything
+		AutoRefMatch match = plugin.getMatch(event.getBlock().getWorld());
+		if (match != null) match.checkWinConditions();
+	}
 
 	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
 	public void checkWinConditions(BlockRedstoneEvent event)
@@ -175,6 +186,14 @@ public class ObjectiveTracker implements Listener
 	public void checkWinConditions(LeavesDecayEvent event)
 	{ _checkWinConditions(event); }
 
+	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
+	public void checkWinConditions(EntityExplodeEvent event)
+	{
+		AutoRefMatch match = plugin.getMatch(event.getLocation().getWorld());
+		if (match != null) for (Block b : event.blockList())
+			match.checkWinConditions(b.getLocation());
+	}
+
 	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
 	public void checkWinConditions(PlayerDeathEvent event)
 	{ _checkWinConditions(event); }
@@ -185,7 +204,7 @@ public class ObjectiveTracker implements Listener
 	public void blockBreak(BlockBreakEvent event)
 	{
 		AutoRefMatch match = plugin.getMatch(event.getBlock().getWorld());
-		if (match != null) match.checkWinConditions();
+		if (match != null) match.checkWinConditions(event.getBlock().getLocation());
 	}
 
 	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
@@ -194,7 +213,7 @@ public class ObjectiveTracker implements Listener
 		if (event.hasBlock())
 		{
 			AutoRefMatch match = plugin.getMatch(event.getClickedBlock().getWorld());
-			if (match != null) match.checkWinConditions();
+			if (match != null) match.checkWinConditions(event.getClickedBlock().getLocation());
 		}
 	}
 
@@ -206,39 +225,55 @@ public class ObjectiveTracker implements Listener
 
 	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
 	public void itemDrop(PlayerDropItemEvent event)
-	{ inventoryChange(event.getPlayer()); }
+	{
+		ItemStack item = event.getItemDrop().getItemStack();
+		inventoryChange(event.getPlayer(), item, -item.getAmount());
+	}
 
 	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
 	public void itemPickup(PlayerPickupItemEvent event)
-	{ inventoryChange(event.getPlayer()); }
+	{
+		ItemStack item = event.getItem().getItemStack();
+		inventoryChange(event.getPlayer(), item, item.getAmount() - event.getRemaining());
+	}
 
-	@EventHandler(priority=EventPriority.MONITOR)
+	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
 	public void blockPlaceInventory(BlockPlaceEvent event)
-	{ inventoryChange(event.getPlayer()); }
-
-	class InventoryChangeTask implements Runnable
 	{
-		AutoRefPlayer apl = null;
-
-		public InventoryChangeTask(AutoRefPlayer apl)
-		{ this.apl = apl; }
-
-		public void run()
-		{ if (apl != null) apl.updateCarrying(); }
+		// placing blocks in creative mode doesn't use up the item
+		if (event.getPlayer().getGameMode() != GameMode.CREATIVE)
+			inventoryChange(event.getPlayer(), event.getItemInHand(), -1);
 	}
 
-	public void inventoryChange(HumanEntity entity)
+	private AutoRefPlayer getTrackedPlayer(HumanEntity entity)
 	{
 		AutoRefMatch match = plugin.getMatch(entity.getWorld());
-		if (match == null) return;
+		if (match == null) return null;
 
 		if (match.getCurrentState().inProgress() &&
 			entity.getType() == EntityType.PLAYER)
-		{
-			AutoRefPlayer apl = match.getPlayer((Player) entity);
-			if (apl != null) plugin.getServer().getScheduler()
-				.runTask(plugin, new InventoryChangeTask(apl));
-		}
+			return match.getPlayer((Player) entity);
+		return null;
+	}
+
+	/**
+	 * Notifies the player's objective tracking that an unknown change has been made to
+	 * their inventory, forcing a rescan.
+	 */
+	public void inventoryChange(HumanEntity entity)
+	{
+		AutoRefPlayer apl = getTrackedPlayer(entity);
+		if (apl != null) apl.inventoryChanged();
+	}
+
+	/**
+	 * Notifies the player's objective tracking that items have been added to or removed
+	 * from their inventory.
+	 */
+	public void inventoryChange(HumanEntity entity, ItemStack item, int delta)
+	{
+		AutoRefPlayer apl = getTrackedPlayer(entity);
+		if (apl != null) apl.inventoryChanged(item, delta);
 	}
 
 	/* TRACKING PLAYER HEALTH, HUNGER, AND ARMOR */
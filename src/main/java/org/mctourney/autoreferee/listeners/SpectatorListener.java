@@ -29,6 +29,7 @@ import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerPickupItemEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
 import org.bukkit.inventory.DoubleChestInventory;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
@@ -38,7 +39,9 @@ import org.bukkit.plugin.Plugin;
 import org.bukkit.event.Listener;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.player.PlayerRegisterChannelEvent;
+import org.bukkit.event.player.PlayerUnregisterChannelEvent;
 import org.bukkit.plugin.messaging.PluginMessageListener;
+import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.ChatColor;
 
 import com.google.common.collect.Maps;
@@ -48,6 +51,7 @@ import org.mctourney.autoreferee.AutoRefPlayer;
 import org.mctourney.autoreferee.AutoRefSpectator;
 import org.mctourney.autoreferee.AutoRefTeam;
 import org.mctourney.autoreferee.AutoReferee;
+import org.mctourney.autoreferee.RefereeChannel;
 import org.mctourney.autoreferee.goals.BlockGoal;
 import org.mctourney.autoreferee.regions.AutoRefRegion;
 import org.mctourney.autoreferee.util.LocationUtil;
@@ -160,8 +164,14 @@ public class SpectatorListener implements PluginMessageListener, Listener
 	@EventHandler
 	public void channelRegistration(PlayerRegisterChannelEvent event)
 	{
-		Player pl = event.getPlayer();
-		AutoRefMatch match = plugin.getMatch(pl.getWorld());
+		final Player pl = event.getPlayer();
+		final AutoRefMatch match = plugin.getMatch(pl.getWorld());
+
+		// newer clients register the v2 channel as well, and are resynced on it
+		if (AutoReferee.REFEREE_V2_PLUGIN_CHANNEL.equals(event.getChannel()) && match != null)
+		{
+			if (match.isReferee(pl)) match.updateReferee(pl);
+		}
 
 		if (AutoReferee.REFEREE_PLUGIN_CHANNEL.equals(event.getChannel()) && match != null)
 		{
@@ -174,11 +184,27 @@ public class SpectatorListener implements PluginMessageListener, Listener
 				match.leaveTeam(pl, true);
 			}
 
-			// update a referee with the latest information regarding the match
-			if (match.isReferee(pl)) match.updateReferee(pl);
+			// update a referee with the latest information regarding the match, once
+			// we know if their client also registers the v2 channel (which resyncs them)
+			if (match.isReferee(pl)) new BukkitRunnable()
+			{
+				@Override
+				public void run()
+				{ if (!RefereeChannel.isSupported(pl)) match.updateReferee(pl); }
+			}.runTask(plugin);
 		}
 	}
 
+	@EventHandler
+	public void channelUnregistration(PlayerUnregisterChannelEvent event)
+	{
+		Player pl = event.getPlayer();
+		AutoRefMatch match = plugin.getMatch(pl.getWorld());
+
+		if (AutoReferee.REFEREE_V2_PLUGIN_CHANNEL.equals(event.getChannel()) && match != null)
+			match.getRefereeChannel().remove(pl.getName());
+	}
+
 	@EventHandler(priority= EventPriority.MONITOR, ignoreCancelled=true)
 	public void entityInteract(PlayerInteractEntityEvent event)
 	{
@@ -186,7 +212,7 @@ public class SpectatorListener implements PluginMessageListener, Listener
 		Entity entity = event.getRightClicked();
 
 		AutoRefMatch match = plugin.getMatch(pl.getWorld());
-		if (match != null) match.checkWinConditions();
+		if (match != null) match.checkWinConditions(entity.getLocation());
 
 		if (entity.getType() == EntityType.PLAYER && match != null
 			&& match.isSpectator(pl) && match.isPlayer((Player) entity))
@@ -220,32 +246,22 @@ public class SpectatorListener implements PluginMessageListener, Listener
 		}
 	}
 
-	@EventHandler(priority=EventPriority.MONITOR)
+	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
 	public void spectatorMove(PlayerMoveEvent event)
-	{
-		Player player = event.getPlayer();
-		World world = player.getWorld();
+	{ trackMove(event.getPlayer(), event.getTo()); }
 
-		AutoRefMatch match = plugin.getMatch(world);
-		if (match == null || !match.isSpectator(player)) return;
+	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
+	public void spectatorTeleport(PlayerTeleportEvent event)
+	{ if (event.getTo() != null) trackMove(event.getPlayer(), event.getTo()); }
 
-		AutoRefSpectator spec = match.getSpectator(player);
-		boolean pvis = spec.isInvisible();
-
-		double bdistance = Double.MAX_VALUE;
-		for (AutoRefPlayer apl : match.getPlayers()) if (apl.isOnline())
-		{
-			Location ploc = apl.getPlayer().getLocation();
-			double dist = ploc.distanceSquared(player.getLocation());
-			if (dist < bdistance) { bdistance = dist; }
-		}
-
-		// if the spectator should be invisible, change visibility and then redo visibility
-		boolean vis = bdistance <= SPECTATOR_VISIBILITY_RADIUS * SPECTATOR_VISIBILITY_RADIUS;
-		spec.setInvisible(vis);
+	@EventHandler(priority=EventPriority.MONITOR)
+	public void spectatorRespawn(PlayerRespawnEvent event)
+	{ trackMove(event.getPlayer(), event.getRespawnLocation()); }
 
-		// if the visibility status has changed, reconfigure
-		if (pvis != vis) match.setupVisibility(player);
+	private void trackMove(Player player, Location to)
+	{
+		AutoRefMatch match = plugin.getMatch(to.getWorld());
+		if (match != null) match.getSpectatorVisibility().move(player, to);
 	}
 
 	@EventHandler(priority=EventPriority.MONITOR)
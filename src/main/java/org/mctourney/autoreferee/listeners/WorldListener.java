@@ -21,6 +21,7 @@ import org.bukkit.event.world.WorldLoadEvent;
 import org.bukkit.event.world.WorldInitEvent;
 import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
 
 import org.mctourney.autoreferee.AutoRefMatch;
 import org.mctourney.autoreferee.AutoReferee;
@@ -72,6 +73,7 @@ public class WorldListener implements Listener
 
 		// get the match for the world the player is logging into
 		AutoRefMatch match = plugin.getMatch(player.getWorld());
+		if (match != null) match.invalidateRoles();
 
 		// if there is no match here, or they aren't meant to play in this world,
 		// check if there is a world they are expected in
@@ -111,12 +113,21 @@ public class WorldListener implements Listener
 	@EventHandler
 	public void playerQuit(PlayerQuitEvent event)
 	{
-		AutoRefMatch match = plugin.getMatch(event.getPlayer().getWorld());
+		final AutoRefMatch match = plugin.getMatch(event.getPlayer().getWorld());
 		if (match != null)
 		{
+			// player is still in the world until this event completes
+			new BukkitRunnable()
+			{
+				@Override public void run()
+				{ match.invalidateRoles(); }
+			}.runTask(plugin);
+
 			if (!match.getCurrentState().inProgress() || match.isPlayer(event.getPlayer()))
 				match.broadcast(match.colorMessage(event.getQuitMessage()));
 			event.setQuitMessage(null);
+			match.getSpectatorVisibility().remove(event.getPlayer().getName());
+			match.getRefereeChannel().remove(event.getPlayer().getName());
 
 			// set the player back to the main scoreboard
 			event.getPlayer().setScoreboard(Bukkit.getScoreboardManager().getMainScoreboard());
@@ -128,13 +139,19 @@ public class WorldListener implements Listener
 	{
 		// update team ready information for both worlds
 		AutoRefMatch matchFm = plugin.getMatch(event.getFrom());
-		if (matchFm != null) matchFm.checkTeamsReady();
+		if (matchFm != null)
+		{
+			matchFm.invalidateRoles(); matchFm.checkTeamsReady();
+			matchFm.getSpectatorVisibility().remove(event.getPlayer().getName());
+			matchFm.getRefereeChannel().remove(event.getPlayer().getName());
+		}
 
 		Player player = event.getPlayer();
 		AutoRefMatch matchTo = plugin.getMatch(player.getWorld());
 
 		if (matchTo != null)
 		{
+			matchTo.invalidateRoles();
 			matchTo.checkTeamsReady();
 			matchTo.sendMatchInfo(player);
 			matchTo.setupSpectators(player);
@@ -169,6 +186,7 @@ public class WorldListener implements Listener
 		if (match == null) return;
 
 		match.saveWorldConfiguration();
+		match.flushWorldConfiguration();
 		plugin.clearMatch(match);
 	}
 
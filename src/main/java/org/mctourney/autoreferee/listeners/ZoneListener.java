@@ -26,6 +26,8 @@ import org.bukkit.event.entity.EntityChangeBlockEvent;
 import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.event.entity.EntityTargetEvent;
+import org.bukkit.event.entity.ItemDespawnEvent;
+import org.bukkit.event.entity.ItemSpawnEvent;
 import org.bukkit.event.entity.ProjectileLaunchEvent;
 import org.bukkit.event.player.PlayerBedEnterEvent;
 import org.bukkit.event.player.PlayerBucketEmptyEvent;
@@ -43,6 +45,7 @@ import org.mctourney.autoreferee.AutoRefMatch;
 import org.mctourney.autoreferee.AutoRefPlayer;
 import org.mctourney.autoreferee.AutoRefTeam;
 import org.mctourney.autoreferee.AutoReferee;
+import org.mctourney.autoreferee.ItemTracker;
 import org.mctourney.autoreferee.AutoRefMatch.MatchStatus;
 import org.mctourney.autoreferee.AutoRefMatch.Role;
 import org.mctourney.autoreferee.goals.BlockGoal;
@@ -205,6 +208,22 @@ public class ZoneListener implements Listener
 		return true;
 	}
 
+	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
+	public void itemSpawn(ItemSpawnEvent event)
+	{
+		AutoRefMatch match = plugin.getMatch(event.getEntity().getWorld());
+		if (match != null && match.getItemTracker() != null)
+			match.getItemTracker().track(event.getEntity());
+	}
+
+	@EventHandler(priority=EventPriority.MONITOR, ignoreCancelled=true)
+	public void itemDespawn(ItemDespawnEvent event)
+	{
+		AutoRefMatch match = plugin.getMatch(event.getEntity().getWorld());
+		if (match != null && match.getItemTracker() != null)
+			match.getItemTracker().untrack(event.getEntity());
+	}
+
 	@EventHandler(priority=EventPriority.MONITOR)
 	public void playerPickup(PlayerPickupItemEvent event)
 	{
@@ -212,8 +231,13 @@ public class ZoneListener implements Listener
 		AutoRefMatch match = plugin.getMatch(event.getPlayer().getWorld());
 		if (match == null) return;
 
-		if (match.elevatedItem.containsKey(event.getItem().getUniqueId())
-			&& match.isPlayer(event.getPlayer()))
+		ItemTracker tracker = match.getItemTracker();
+		if (tracker == null) return;
+
+		boolean elevated = tracker.isElevated(event.getItem());
+		if (!event.isCancelled() && event.getRemaining() == 0) tracker.untrack(event.getItem());
+
+		if (elevated && match.isPlayer(event.getPlayer()))
 		{
 			String itemname = new BlockData(event.getItem().getItemStack()).getDisplayName();
 			String msg = match.getDisplayName(event.getPlayer()) + ChatColor.DARK_GRAY +
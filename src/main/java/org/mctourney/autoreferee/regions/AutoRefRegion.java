@@ -172,6 +172,9 @@ public abstract class AutoRefRegion
 	public boolean is(Flag flag)
 	{ return 0 != (flag.getValue() & this.flags); }
 
+	public int getFlagBits()
+	{ return this.flags; }
+
 	public Set<Flag> getFlags()
 	{
 		Set<Flag> fset = Sets.newHashSet();
@@ -268,17 +271,25 @@ public abstract class AutoRefRegion
 		elementNames.put("cylinder", CylinderRegion.class);
 	}
 
+	// constructors looked up for each region tag, so they are only looked up once
+	private static Map<String, Constructor<? extends AutoRefRegion>> matchConstructors = Maps.newHashMap();
+
 	public static void addRegionType(String tag, Class<? extends AutoRefRegion> cls)
-	{ elementNames.put(tag, cls); }
+	{ elementNames.put(tag, cls); matchConstructors.remove(tag); }
 
 	public static AutoRefRegion fromElement(AutoRefMatch match, Element elt)
 	{
-		Class<? extends AutoRefRegion> cls = elementNames.get(elt.getName());
-		if (cls == null) return null;
-
 		try
 		{
-			Constructor<? extends AutoRefRegion> cons = cls.getConstructor(AutoRefMatch.class, Element.class);
+			Constructor<? extends AutoRefRegion> cons = matchConstructors.get(elt.getName());
+			if (cons == null)
+			{
+				Class<? extends AutoRefRegion> cls = elementNames.get(elt.getName());
+				if (cls == null) return null;
+
+				cons = cls.getConstructor(AutoRefMatch.class, Element.class);
+				matchConstructors.put(elt.getName(), cons);
+			}
 			return cons.newInstance(match, elt).getRegionSettings(match, elt);
 		}
 		catch (Exception e) { e.printStackTrace(); return null; }
@@ -96,14 +96,13 @@ public class CuboidRegion extends AutoRefRegion
 			return Double.POSITIVE_INFINITY;
 
 		double x = v.getX(), y = v.getY(), z = v.getZ();
-		Location mx = getMaximumPoint(), mn = getMinimumPoint();
 
 		// return maximum distance from this region
 		// (max on all sides, axially-aligned)
 		return CuboidRegion.multimax ( 0
-		,	mn.getX() - x, x - mx.getX() - 1
-		,	mn.getY() - y, y - mx.getY() - 1
-		,	mn.getZ() - z, z - mx.getZ() - 1
+		,	x1 - x, x - x2 - 1
+		,	y1 - y, y - y2 - 1
+		,	z1 - z, z - z2 - 1
 		);
 	}
 
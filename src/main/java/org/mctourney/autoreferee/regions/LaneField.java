@@ -0,0 +1,165 @@
+package org.mctourney.autoreferee.regions;
+
+import java.util.Set;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import org.mctourney.autoreferee.AutoRefMatch;
+import org.mctourney.autoreferee.AutoRefTeam;
+import org.mctourney.autoreferee.listeners.ZoneListener;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Precomputed block-resolution lane membership for a single team. Each block is
+ * classified as entirely inside the team's lane, entirely outside of it (by more than
+ * {@link #MAX_DISTANCE}), or on the border, in which case the exact check must be done.
+ *
+ * Regions are assumed to be convex, which holds for all of the built-in region types.
+ */
+public class LaneField
+{
+	public static final int OUTSIDE = 0;
+	public static final int BORDER  = 1;
+	public static final int INSIDE  = 2;
+
+	// lookups are only valid for distances up to this value
+	public static final double MAX_DISTANCE = ZoneListener.SNEAK_DISTANCE;
+
+	// distance from the center of a block to any of its corners
+	private static final double HALF_DIAGONAL = Math.sqrt(3.0) / 2.0;
+
+	// blocks around each region's bounding box that might still be within range
+	private static final int MARGIN = 2;
+
+	// 2 bits per block, so this is 8MB at most
+	private static final long MAX_VOXELS = 1L << 25;
+
+	private final World world;
+	private final int minX, minY, minZ;
+	private final int sizeX, sizeY, sizeZ;
+
+	private final long[] bits;
+
+	private LaneField(World world, CuboidRegion bound)
+	{
+		this.world = world;
+		minX = (int) Math.floor(bound.x1) - MARGIN - 1;
+		minY = (int) Math.floor(bound.y1) - MARGIN - 1;
+		minZ = (int) Math.floor(bound.z1) - MARGIN - 1;
+
+		sizeX = (int) Math.floor(bound.x2) + MARGIN + 2 - minX;
+		sizeY = (int) Math.floor(bound.y2) + MARGIN + 2 - minY;
+		sizeZ = (int) Math.floor(bound.z2) + MARGIN + 2 - minZ;
+
+		bits = new long[(int)(((long) sizeX * sizeY * sizeZ + 31) >> 5)];
+	}
+
+	/**
+	 * Builds the lane field for a team from its regions and the match's start regions.
+	 *
+	 * @return lane field, or null if the lane is too large to precompute
+	 */
+	public static LaneField build(AutoRefTeam team)
+	{
+		AutoRefMatch match = team.getMatch();
+		Set<AutoRefRegion> regions = team.getRegions();
+
+		CuboidRegion bound = null;
+		for (AutoRefRegion reg : match.getStartRegions()) bound = AutoRefRegion.combine(bound, reg);
+		for (AutoRefRegion reg : regions) bound = AutoRefRegion.combine(bound, reg);
+		if (bound == null) return null;
+
+		long volume = (long)(bound.x2 - bound.x1 + 2 * MARGIN + 4) *
+			(long)(bound.y2 - bound.y1 + 2 * MARGIN + 4) * (long)(bound.z2 - bound.z1 + 2 * MARGIN + 4);
+		if (volume > MAX_VOXELS) return null;
+
+		LaneField field = new LaneField(match.getWorld(), bound);
+		Set<AutoRefRegion> noentry = Sets.newHashSet();
+
+		// start regions are always enterable
+		for (AutoRefRegion reg : match.getStartRegions()) field.fill(reg, true);
+		for (AutoRefRegion reg : regions)
+		{
+			boolean enterable = !reg.is(AutoRefRegion.Flag.NO_ENTRY);
+			if (!enterable) noentry.add(reg);
+			field.fill(reg, enterable);
+		}
+
+		// anything near a no-entry region must fall back to the exact check
+		for (AutoRefRegion reg : noentry) field.exclude(reg);
+		return field;
+	}
+
+	/**
+	 * Classifies a location as being inside, outside, or on the border of this lane.
+	 *
+	 * @return one of INSIDE, OUTSIDE, or BORDER
+	 */
+	public int get(Location loc)
+	{
+		if (loc.getWorld() != world) return BORDER;
+		int x = loc.getBlockX() - minX, y = loc.getBlockY() - minY, z = loc.getBlockZ() - minZ;
+
+		if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) return BORDER;
+		return get((x * sizeY + y) * sizeZ + z);
+	}
+
+	private int get(int i)
+	{ return (int)(bits[i >> 5] >>> ((i & 31) << 1)) & 3; }
+
+	private void set(int i, int v)
+	{
+		int s = (i & 31) << 1;
+		bits[i >> 5] = (bits[i >> 5] & ~(3L << s)) | ((long) v << s);
+	}
+
+	private void fill(AutoRefRegion reg, boolean enterable)
+	{
+		CuboidRegion bb = reg.getBoundingCuboid();
+		Location probe = new Location(world, 0, 0, 0);
+
+		for (int x = (int) Math.floor(bb.x1) - MARGIN; x <= (int) Math.floor(bb.x2) + MARGIN; ++x)
+		for (int y = (int) Math.floor(bb.y1) - MARGIN; y <= (int) Math.floor(bb.y2) + MARGIN; ++y)
+		for (int z = (int) Math.floor(bb.z1) - MARGIN; z <= (int) Math.floor(bb.z2) + MARGIN; ++z)
+		{
+			int i = ((x - minX) * sizeY + (y - minY)) * sizeZ + (z - minZ);
+			int cur = get(i); if (cur == INSIDE) continue;
+
+			probe.setX(x + 0.5); probe.setY(y + 0.5); probe.setZ(z + 0.5);
+			double d = reg.distanceToRegion(probe);
+
+			if (enterable && d <= 0.0 && containsBlock(reg, x, y, z, probe)) set(i, INSIDE);
+			else if (cur == OUTSIDE && d - HALF_DIAGONAL <= MAX_DISTANCE) set(i, BORDER);
+		}
+	}
+
+	private void exclude(AutoRefRegion reg)
+	{
+		CuboidRegion bb = reg.getBoundingCuboid();
+		Location probe = new Location(world, 0, 0, 0);
+
+		for (int x = (int) Math.floor(bb.x1) - MARGIN; x <= (int) Math.floor(bb.x2) + MARGIN; ++x)
+		for (int y = (int) Math.floor(bb.y1) - MARGIN; y <= (int) Math.floor(bb.y2) + MARGIN; ++y)
+		for (int z = (int) Math.floor(bb.z1) - MARGIN; z <= (int) Math.floor(bb.z2) + MARGIN; ++z)
+		{
+			int i = ((x - minX) * sizeY + (y - minY)) * sizeZ + (z - minZ);
+			if (get(i) != INSIDE) continue;
+
+			probe.setX(x + 0.5); probe.setY(y + 0.5); probe.setZ(z + 0.5);
+			if (reg.distanceToRegion(probe) - HALF_DIAGONAL <= MAX_DISTANCE) set(i, BORDER);
+		}
+	}
+
+	// since regions are convex, a block is inside if all eight corners are inside
+	private static boolean containsBlock(AutoRefRegion reg, int x, int y, int z, Location probe)
+	{
+		for (int c = 0; c < 8; ++c)
+		{
+			probe.setX(x + (c & 1)); probe.setY(y + ((c >> 1) & 1)); probe.setZ(z + ((c >> 2) & 1));
+			if (!reg.contains(probe)) return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,192 @@
+package org.mctourney.autoreferee.regions;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.bukkit.Location;
+
+import org.mctourney.autoreferee.AutoRefTeam;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Spatial index over a set of regions, bucketed by chunk column.
+ */
+public class RegionIndex
+{
+	// returned by flag queries when no region contains the location
+	public static final int NOT_CONTAINED = -1;
+
+	// each cell is a single chunk column (16x16)
+	private static final int CELL_SHIFT = 4;
+
+	// regions spanning more cells than this are checked on every query
+	private static final int MAX_CELLS = 1 << 16;
+
+	private static final AutoRefRegion[] EMPTY = new AutoRefRegion[0];
+
+	private List<AutoRefRegion> regions = Lists.newArrayList();
+	private List<AutoRefRegion> oversized = Lists.newArrayList();
+
+	private AutoRefRegion[][] cells = null;
+	private int minCX, minCZ, sizeX, sizeZ;
+
+	// set when the grid needs to be rebuilt before the next query
+	private boolean dirty = false;
+
+	/**
+	 * Adds a region to the index. If the region fits inside the current grid, it is
+	 * inserted immediately, otherwise the grid is rebuilt on the next query.
+	 */
+	public void add(AutoRefRegion reg)
+	{
+		if (reg == null) return;
+		regions.add(reg);
+
+		if (cells == null || dirty) { dirty = true; return; }
+		int[] bounds = cellBounds(reg);
+
+		if (bounds == null) oversized.add(reg);
+		else if (bounds[0] < minCX || bounds[1] < minCZ ||
+			bounds[2] >= minCX + sizeX || bounds[3] >= minCZ + sizeZ) dirty = true;
+		else insert(reg, bounds);
+	}
+
+	/**
+	 * Removes a region from the index.
+	 */
+	public void remove(AutoRefRegion reg)
+	{
+		// regions may change shape, so compare by identity rather than equals()
+		for (int i = 0; i < regions.size(); ++i)
+			if (regions.get(i) == reg) { regions.remove(i); dirty = true; return; }
+	}
+
+	/**
+	 * Notifies the index that the shape of a region has changed.
+	 */
+	public void update(AutoRefRegion reg)
+	{ dirty = true; }
+
+	/**
+	 * Removes all regions from the index.
+	 */
+	public void clear()
+	{ regions.clear(); dirty = true; }
+
+	/**
+	 * Gets the combined flags of all regions containing a location.
+	 *
+	 * @param owner only consider regions owned by this team, or null for all regions
+	 * @return bitmask of region flags, or NOT_CONTAINED if no region contains the location
+	 */
+	public int getFlags(Location loc, AutoRefTeam owner)
+	{
+		if (dirty) rebuild();
+
+		int mask = NOT_CONTAINED;
+		for (AutoRefRegion reg : getCell(loc.getBlockX() >> CELL_SHIFT, loc.getBlockZ() >> CELL_SHIFT))
+			mask = accumulate(mask, reg, loc, owner);
+		for (AutoRefRegion reg : oversized)
+			mask = accumulate(mask, reg, loc, owner);
+		return mask;
+	}
+
+	/**
+	 * Checks if a location is flagged with a specific region flag.
+	 *
+	 * @param owner only consider regions owned by this team, or null for all regions
+	 * @param def value to return if no region contains the location
+	 * @return true if location contains flag, otherwise false
+	 */
+	public boolean hasFlag(Location loc, AutoRefRegion.Flag flag, AutoRefTeam owner, boolean def)
+	{
+		int mask = getFlags(loc, owner);
+		return mask == NOT_CONTAINED ? def : 0 != (mask & flag.getValue());
+	}
+
+	private static int accumulate(int mask, AutoRefRegion reg, Location loc, AutoRefTeam owner)
+	{
+		if (owner != null && !reg.isOwner(owner)) return mask;
+		if (!reg.contains(loc)) return mask;
+		return (mask == NOT_CONTAINED ? 0 : mask) | reg.getFlagBits();
+	}
+
+	private AutoRefRegion[] getCell(int cx, int cz)
+	{
+		if (cells == null) return EMPTY;
+		cx -= minCX; cz -= minCZ;
+
+		if (cx < 0 || cz < 0 || cx >= sizeX || cz >= sizeZ) return EMPTY;
+		AutoRefRegion[] cell = cells[cx * sizeZ + cz];
+		return cell == null ? EMPTY : cell;
+	}
+
+	// { min cx, min cz, max cx, max cz } inclusive, or null if region is too large to bucket
+	private static int[] cellBounds(AutoRefRegion reg)
+	{
+		CuboidRegion bound = reg.getBoundingCuboid();
+
+		// cuboids contain the full block at their maximum point
+		int[] b = new int[]
+		{	(int) Math.floor(bound.x1) >> CELL_SHIFT
+		,	(int) Math.floor(bound.z1) >> CELL_SHIFT
+		,	((int) Math.floor(bound.x2) + 1) >> CELL_SHIFT
+		,	((int) Math.floor(bound.z2) + 1) >> CELL_SHIFT
+		};
+
+		long area = (long)(b[2] - b[0] + 1) * (b[3] - b[1] + 1);
+		return area > MAX_CELLS ? null : b;
+	}
+
+	private void insert(AutoRefRegion reg, int[] b)
+	{
+		for (int cx = b[0]; cx <= b[2]; ++cx)
+			for (int cz = b[1]; cz <= b[3]; ++cz)
+		{
+			int i = (cx - minCX) * sizeZ + (cz - minCZ);
+			AutoRefRegion[] cell = cells[i];
+
+			if (cell == null) cell = new AutoRefRegion[]{ reg };
+			else { cell = Arrays.copyOf(cell, cell.length + 1); cell[cell.length - 1] = reg; }
+			cells[i] = cell;
+		}
+	}
+
+	private void rebuild()
+	{
+		dirty = false; oversized.clear(); cells = null;
+		List<int[]> bounds = Lists.newArrayListWithCapacity(regions.size());
+
+		int x1 = Integer.MAX_VALUE, z1 = Integer.MAX_VALUE;
+		int x2 = Integer.MIN_VALUE, z2 = Integer.MIN_VALUE;
+
+		for (AutoRefRegion reg : regions)
+		{
+			int[] b = cellBounds(reg);
+			bounds.add(b);
+			if (b == null) { oversized.add(reg); continue; }
+
+			x1 = Math.min(x1, b[0]); z1 = Math.min(z1, b[1]);
+			x2 = Math.max(x2, b[2]); z2 = Math.max(z2, b[3]);
+		}
+
+		// if there is nothing to put in the grid, leave it empty
+		if (x1 > x2 || z1 > z2) return;
+
+		// if the map is unreasonably large, treat everything as oversized
+		if ((long)(x2 - x1 + 1) * (z2 - z1 + 1) > MAX_CELLS)
+		{
+			oversized.clear();
+			oversized.addAll(regions);
+			return;
+		}
+
+		minCX = x1; sizeX = x2 - x1 + 1;
+		minCZ = z1; sizeZ = z2 - z1 + 1;
+		cells = new AutoRefRegion[sizeX * sizeZ][];
+
+		for (int i = 0; i < regions.size(); ++i)
+			if (bounds.get(i) != null) insert(regions.get(i), bounds.get(i));
+	}
+}
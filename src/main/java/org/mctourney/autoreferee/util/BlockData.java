@@ -1,7 +1,5 @@
 package org.mctourney.autoreferee.util;
 
-import java.util.Map;
-
 import org.bukkit.ChatColor;
 import org.bukkit.DyeColor;
 import org.bukkit.Material;
@@ -10,8 +8,6 @@ import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.material.Colorable;
 
-import org.apache.commons.collections.map.DefaultedMap;
-
 /**
  * Represents a type of block, combined with any identifiable metadata.
  *
@@ -71,17 +67,97 @@ public class BlockData
 	 */
 	public BlockData(Material material) { this(material, (byte)-1); }
 
+	// data bits of a packed key which represent "any metadata"
+	private static final int WILDCARD_DATA = 0xFF;
+
+	/**
+	 * Packs this block data into a single integer key, (id << 8) | data. Block data with
+	 * any metadata is packed with all data bits set.
+	 *
+	 * @return packed key
+	 */
+	public int toKey()
+	{ return key(getMaterial() == null ? 0 : getMaterial().getId(), getData()); }
+
+	/**
+	 * Packs a material id and metadata value into a single integer key.
+	 *
+	 * @param data metadata value, or -1 if any metadata
+	 * @return packed key
+	 */
+	public static int key(int id, int data)
+	{ return (id << 8) | (data & WILDCARD_DATA); }
+
+	/**
+	 * Gets the packed key for a block, without constructing a block data object.
+	 *
+	 * @return packed key
+	 */
+	public static int keyOf(Block block)
+	{ return key(block.getTypeId(), block.getData()); }
+
+	/**
+	 * Gets the packed key for an item stack, without constructing a block data object.
+	 *
+	 * @return packed key
+	 */
+	public static int keyOf(ItemStack item)
+	{ return key(item.getTypeId(), (byte) item.getDurability()); }
+
+	/**
+	 * Gets the packed key matching the same material with any metadata.
+	 *
+	 * @return wildcard key
+	 */
+	public static int wildcard(int key)
+	{ return key | WILDCARD_DATA; }
+
+	/**
+	 * Unpacks a block data object from a packed key.
+	 *
+	 * @return block data object
+	 */
+	public static BlockData fromKey(int key)
+	{ return new BlockData(Material.getMaterial(key >>> 8), (byte) key); }
+
+	/**
+	 * Checks if this block data matches any metadata value.
+	 */
+	public boolean isWildcard()
+	{ return getData() == -1; }
+
 	@Override public int hashCode()
-	{ return getMaterial().hashCode(); }
+	{ return toKey(); }
 
 	@Override public boolean equals(Object o)
 	{
 		// if the object is a mismatched type, its not equal
 		if (o == null || !(o instanceof BlockData)) return false;
 
-		// otherwise, check that the data is all equivalent
+		// otherwise, check that the material and data are identical
 		BlockData ob = (BlockData) o;
-		return ob.getMaterial().equals(getMaterial()) && this.dataMatches(ob);
+		return ob.getMaterial() == getMaterial() && ob.getData() == getData();
+	}
+
+	/**
+	 * Checks if another block data object matches this one, treating a metadata
+	 * value of -1 on either side as matching any metadata.
+	 *
+	 * @return true if block data matches, otherwise false
+	 */
+	public boolean matches(BlockData ob)
+	{ return ob != null && ob.getMaterial() == getMaterial() && this.dataMatches(ob); }
+
+	/**
+	 * Checks if a packed key matches this block data, taking wildcards into account.
+	 *
+	 * @return true if key matches, otherwise false
+	 */
+	public boolean matchesKey(int key)
+	{
+		int mine = toKey();
+		return mine == key || wildcard(mine) == key
+			|| (isWildcard() && wildcard(key) == mine);
 	}
 
 	private boolean dataMatches(BlockData ob)
@@ -93,7 +169,10 @@ public class BlockData
 	 * @return true if block matches, otherwise false
 	 */
 	public boolean matchesBlock(Block block)
-	{ return block != null && this.equals(BlockData.fromBlock(block)); }
+	{
+		return block != null && block.getType() == getMaterial()
+			&& (getData() == -1 || block.getData() == getData());
+	}
 
 	public String serialize()
 	{
@@ -180,20 +259,17 @@ public class BlockData
 	 * @param inv inventory object
 	 * @return block data object
 	 */
-	@SuppressWarnings("unchecked")
 	public static BlockData fromInventory(Inventory inv)
 	{
-		Map<BlockData, Integer> count = new DefaultedMap(0);
+		IntIntMap count = new IntIntMap();
+		int best = 0, bestKey = 0;
+
 		for (ItemStack item : inv) if (item != null)
 		{
-			BlockData bd = BlockData.fromItemStack(item);
-			count.put(bd, item.getAmount() + count.get(bd));
+			int key = keyOf(item), c = count.adjust(key, item.getAmount());
+			if (c > best) { best = c; bestKey = key; }
 		}
 
-		Map.Entry<BlockData, Integer> best = null;
-		for (Map.Entry<BlockData, Integer> entry : count.entrySet())
-			if (best == null || entry.getValue() > best.getValue()) best = entry;
-
-		return best == null ? null : best.getKey();
+		return best == 0 ? null : fromKey(bestKey);
 	}
 }
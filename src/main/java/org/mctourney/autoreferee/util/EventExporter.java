@@ -0,0 +1,203 @@
+package org.mctourney.autoreferee.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Streams match messages to an external HTTP server in the background. Messages are
+ * queued without blocking, and sent in batches as a single PUT request per flush
+ * interval. A batch is sent as repeated world/msg pairs, in the order the messages
+ * were queued, so the messages from each match arrive in order. If the queue is full,
+ * new messages are dropped and counted.
+ */
+public class EventExporter
+{
+	private static final String ENCODING = "UTF-8";
+	private static final int TIMEOUT_MS = 5000;
+
+	// most messages sent in a single request
+	private static final int MAX_BATCH = 500;
+
+	// retry delays start here, and double after each failure
+	private static final long RETRY_DELAY_MS = 250L;
+	private static final long MAX_RETRY_DELAY_MS = 10000L;
+
+	private final URL url;
+	private final String userAgent;
+	private final long flushInterval;
+	private final int maxRetries;
+
+	private final BlockingQueue<String> queue;
+	private final AtomicLong sent = new AtomicLong(), dropped = new AtomicLong();
+
+	private final Thread worker;
+	private volatile boolean running = true;
+
+	/**
+	 * Creates and starts an exporter.
+	 *
+	 * @param url location of the server receiving messages
+	 * @param userAgent user agent for requests, possibly null
+	 * @param capacity most messages waiting to be sent before new messages are dropped
+	 * @param flushInterval time between requests, in milliseconds
+	 * @param maxRetries attempts made to resend a failed batch before it is dropped
+	 */
+	public EventExporter(URL url, String userAgent, int capacity, long flushInterval, int maxRetries)
+	{
+		this.url = url;
+		this.userAgent = userAgent;
+		this.flushInterval = flushInterval;
+		this.maxRetries = maxRetries;
+		this.queue = new ArrayBlockingQueue<String>(capacity);
+
+		this.worker = new Thread(new Runnable()
+		{
+			public void run()
+			{ EventExporter.this.run(); }
+		}, "AutoReferee-export");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	/**
+	 * Queues a message to be sent. Never blocks.
+	 *
+	 * @param world name of the world the message is about
+	 * @param msg message text
+	 * @return true if the message was queued, false if it was dropped
+	 */
+	public boolean offer(String world, String msg)
+	{
+		try
+		{
+			String param = "world=" + URLEncoder.encode(world, ENCODING)
+				+ "&msg=" + URLEncoder.encode(msg, ENCODING);
+			if (running && queue.offer(param)) return true;
+		}
+		catch (UnsupportedEncodingException e) { e.printStackTrace(); }
+
+		dropped.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Gets the number of messages which have been delivered.
+	 *
+	 * @return number of messages sent
+	 */
+	public long getSentCount()
+	{ return sent.get(); }
+
+	/**
+	 * Gets the number of messages which were dropped, either because the queue was full
+	 * or because the server could not be reached.
+	 *
+	 * @return number of messages dropped
+	 */
+	public long getDroppedCount()
+	{ return dropped.get(); }
+
+	/**
+	 * Stops the exporter, making one last attempt to send any queued messages.
+	 *
+	 * @param timeout time to wait for queued messages to be sent, in milliseconds
+	 */
+	public void shutdown(long timeout)
+	{
+		running = false;
+		worker.interrupt();
+		try { worker.join(timeout); }
+		catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+	}
+
+	private void run()
+	{
+		List<String> batch = Lists.newArrayListWithCapacity(MAX_BATCH);
+		while (running || !queue.isEmpty())
+		{
+			try
+			{
+				// wait for a message, then give the rest of the interval to fill the batch
+				if (running)
+				{
+					String first = queue.poll(1L, TimeUnit.SECONDS);
+					if (first == null) continue;
+
+					batch.add(first);
+					Thread.sleep(flushInterval);
+				}
+			}
+			catch (InterruptedException e) {  } // shutting down, send what we have
+
+			queue.drainTo(batch, MAX_BATCH - batch.size());
+			if (!batch.isEmpty()) sendBatch(batch);
+			batch.clear();
+		}
+	}
+
+	private void sendBatch(List<String> batch)
+	{
+		StringBuilder body = new StringBuilder();
+		for (String param : batch)
+		{
+			if (body.length() > 0) body.append('&');
+			body.append(param);
+		}
+
+		long delay = RETRY_DELAY_MS;
+		for (int attempt = 0; ; ++attempt)
+		{
+			try { send(body.toString()); sent.addAndGet(batch.size()); return; }
+			catch (IOException e)
+			{
+				// don't keep retrying once we have been asked to stop
+				if (attempt >= maxRetries || !running) break;
+				try { Thread.sleep(delay); }
+				catch (InterruptedException ie) { break; }
+				delay = Math.min(delay * 2, MAX_RETRY_DELAY_MS);
+			}
+		}
+		dropped.addAndGet(batch.size());
+	}
+
+	private void send(String body) throws IOException
+	{
+		HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+		conn.setConnectTimeout(TIMEOUT_MS);
+		conn.setReadTimeout(TIMEOUT_MS);
+		conn.setDoOutput(true);
+		conn.setRequestMethod("PUT");
+		conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+		if (userAgent != null) conn.setRequestProperty("User-Agent", userAgent);
+
+		byte[] data = body.getBytes(ENCODING);
+		conn.setFixedLengthStreamingMode(data.length);
+
+		OutputStream out = conn.getOutputStream();
+		try { out.write(data); }
+		finally { IOUtils.closeQuietly(out); }
+
+		// the response must be read fully for the connection to be kept alive and reused
+		int status = conn.getResponseCode();
+		InputStream in = status >= 400 ? conn.getErrorStream() : conn.getInputStream();
+		if (in != null) try { IOUtils.toByteArray(in); }
+		finally { IOUtils.closeQuietly(in); }
+
+		if (status < 200 || status >= 300)
+			throw new IOException("Server returned " + status);
+	}
+}
@@ -0,0 +1,139 @@
+package org.mctourney.autoreferee.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressed map from int keys to int values, with no boxing on lookups.
+ * Entries cannot be removed individually, only cleared all at once.
+ */
+public class IntIntMap
+{
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private int[] keys;
+	private int[] values;
+	private boolean[] used;
+
+	private int size = 0;
+
+	/**
+	 * Constructs an empty map.
+	 */
+	public IntIntMap()
+	{ this(16); }
+
+	/**
+	 * Constructs an empty map sized to hold a number of entries without resizing.
+	 *
+	 * @param expected number of entries expected
+	 */
+	public IntIntMap(int expected)
+	{ allocate(capacityFor(expected)); }
+
+	/**
+	 * Gets the number of entries in this map.
+	 */
+	public int size()
+	{ return size; }
+
+	/**
+	 * Checks if this map contains any entries.
+	 */
+	public boolean isEmpty()
+	{ return size == 0; }
+
+	/**
+	 * Checks if this map contains a mapping for a key.
+	 *
+	 * @return true if key is present, otherwise false
+	 */
+	public boolean containsKey(int key)
+	{ return used[find(key)]; }
+
+	/**
+	 * Gets the value mapped to a key.
+	 *
+	 * @param def value to return if the key is not present
+	 * @return mapped value, or def if the key is not present
+	 */
+	public int get(int key, int def)
+	{
+		int i = find(key);
+		return used[i] ? values[i] : def;
+	}
+
+	/**
+	 * Maps a key to a value, replacing any existing value.
+	 */
+	public void put(int key, int value)
+	{
+		int i = find(key);
+		if (!used[i]) { insert(i, key, value); return; }
+		values[i] = value;
+	}
+
+	/**
+	 * Adds a delta to the value mapped to a key, treating a missing key as zero.
+	 *
+	 * @return the new value
+	 */
+	public int adjust(int key, int delta)
+	{
+		int i = find(key);
+		if (!used[i]) { insert(i, key, delta); return delta; }
+		return values[i] += delta;
+	}
+
+	/**
+	 * Removes all entries from this map.
+	 */
+	public void clear()
+	{ Arrays.fill(used, false); size = 0; }
+
+	private void insert(int i, int key, int value)
+	{
+		keys[i] = key; values[i] = value; used[i] = true;
+		if (++size > keys.length * LOAD_FACTOR) rehash();
+	}
+
+	private int find(int key)
+	{
+		int mask = keys.length - 1, i = mix(key) & mask;
+		while (used[i] && keys[i] != key) i = (i + 1) & mask;
+		return i;
+	}
+
+	private void rehash()
+	{
+		int[] oldkeys = keys, oldvalues = values;
+		boolean[] oldused = used;
+
+		allocate(keys.length << 1);
+		for (int i = 0; i < oldkeys.length; ++i) if (oldused[i])
+		{
+			int j = find(oldkeys[i]);
+			keys[j] = oldkeys[i]; values[j] = oldvalues[i]; used[j] = true;
+		}
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new int[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+	}
+
+	static int capacityFor(int expected)
+	{
+		int capacity = 4;
+		while (capacity * LOAD_FACTOR < expected) capacity <<= 1;
+		return capacity;
+	}
+
+	// spread packed keys, which differ mostly in their low bits
+	static int mix(int key)
+	{
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
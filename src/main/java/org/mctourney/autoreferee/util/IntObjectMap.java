@@ -0,0 +1,120 @@
+package org.mctourney.autoreferee.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressed map from int keys to object values, with no boxing on lookups.
+ * Entries cannot be removed individually, only cleared all at once.
+ *
+ * @param <V> value type
+ */
+public class IntObjectMap<V>
+{
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private int[] keys;
+	private Object[] values;
+	private boolean[] used;
+
+	private int size = 0;
+
+	/**
+	 * Constructs an empty map.
+	 */
+	public IntObjectMap()
+	{ this(16); }
+
+	/**
+	 * Constructs an empty map sized to hold a number of entries without resizing.
+	 *
+	 * @param expected number of entries expected
+	 */
+	public IntObjectMap(int expected)
+	{ allocate(IntIntMap.capacityFor(expected)); }
+
+	/**
+	 * Gets the number of entries in this map.
+	 */
+	public int size()
+	{ return size; }
+
+	/**
+	 * Checks if this map contains any entries.
+	 */
+	public boolean isEmpty()
+	{ return size == 0; }
+
+	/**
+	 * Checks if this map contains a mapping for a key.
+	 *
+	 * @return true if key is present, otherwise false
+	 */
+	public boolean containsKey(int key)
+	{ return used[find(key)]; }
+
+	/**
+	 * Gets the value mapped to a key.
+	 *
+	 * @return mapped value, or null if the key is not present
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key)
+	{
+		int i = find(key);
+		return used[i] ? (V) values[i] : null;
+	}
+
+	/**
+	 * Maps a key to a value, replacing any existing value.
+	 *
+	 * @return previous value, or null if the key was not present
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value)
+	{
+		int i = find(key);
+		if (used[i]) { V prev = (V) values[i]; values[i] = value; return prev; }
+
+		keys[i] = key; values[i] = value; used[i] = true;
+		if (++size > keys.length * LOAD_FACTOR) rehash();
+		return null;
+	}
+
+	/**
+	 * Removes all entries from this map.
+	 */
+	public void clear()
+	{
+		Arrays.fill(used, false);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	private int find(int key)
+	{
+		int mask = keys.length - 1, i = IntIntMap.mix(key) & mask;
+		while (used[i] && keys[i] != key) i = (i + 1) & mask;
+		return i;
+	}
+
+	private void rehash()
+	{
+		int[] oldkeys = keys;
+		Object[] oldvalues = values;
+		boolean[] oldused = used;
+
+		allocate(keys.length << 1);
+		for (int i = 0; i < oldkeys.length; ++i) if (oldused[i])
+		{
+			int j = find(oldkeys[i]);
+			keys[j] = oldkeys[i]; values[j] = oldvalues[i]; used[j] = true;
+		}
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new int[capacity];
+		values = new Object[capacity];
+		used = new boolean[capacity];
+	}
+}
@@ -2,30 +2,47 @@ package org.mctourney.autoreferee.util;
 
 import java.awt.image.RenderedImage;
 import java.awt.image.BufferedImage;
-import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.bukkit.Material;
+import javax.imageio.ImageIO;
+
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.scheduler.BukkitRunnable;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.FileUtils;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.io.LineReader;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 
 import org.mctourney.autoreferee.AutoReferee;
 
 public class MapImageGenerator
 {
-	private static Map<BlockData, int[]> blockColors;
+	// time spent taking chunk snapshots each tick, in nanoseconds
+	private static final long TICK_BUDGET = TimeUnit.MILLISECONDS.toNanos(5L);
+
+	// flat ARGB lookup table, indexed by (id << 4) | data
+	private static final int[] colorTable = new int[256 << 4];
 	static
 	{
-		blockColors = Maps.newHashMap();
+		// keyed by packed block data, see BlockData.toKey()
+		IntObjectMap<Integer> blockColors = new IntObjectMap<Integer>(256);
 		LineReader blocks = new LineReader(new InputStreamReader(
 			AutoReferee.getInstance().getResource("colors.csv")));
 
@@ -36,43 +53,225 @@ public class MapImageGenerator
 				String[] parts = line.split("\\s+");
 				if (parts.length == 5) try
 				{
-					BlockData blockdata = new BlockData(Material.getMaterial(Integer.parseInt(parts[0])),
-						Integer.valueOf(parts[1]).byteValue());
-					blockColors.put(blockdata, new int[]{ Integer.parseInt(parts[2]),
-						Integer.parseInt(parts[3]), Integer.parseInt(parts[4]), 255 });
+					int key = BlockData.key(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+					blockColors.put(key, 0xFF000000 | (Integer.parseInt(parts[2]) << 16)
+						| (Integer.parseInt(parts[3]) << 8) | Integer.parseInt(parts[4]));
 				}
 				catch (NumberFormatException e)
 				{ e.printStackTrace(); }
 			}
 		} catch (IOException e)
 		{ e.printStackTrace(); }
+
+		// prefer an exact color for the metadata, otherwise the color for the material
+		for (int id = 0; id < 256; ++id)
+			for (int data = 0; data < 16; ++data)
+		{
+			int key = BlockData.key(id, data);
+			Integer color = blockColors.get(key);
+			if (color == null) color = blockColors.get(BlockData.wildcard(key));
+			if (color != null) colorTable[(id << 4) | data] = color;
+		}
 	}
 
+	private static int getColor(int id, int data)
+	{ return id < 0 || id >= 256 ? 0 : colorTable[(id << 4) | (data & 0xF)]; }
+
 	public static RenderedImage generateFromWorld(World world, int min_x, int max_x, int min_z, int max_z)
 	{
 		int w = max_x - min_x + 1;
 		int h = max_z - min_z + 1;
 
 		BufferedImage buffer = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-		WritableRaster raster = buffer.getRaster();
-
 		for (int x = 0; x < w; ++x)
 		for (int z = 0; z < h; ++z)
-			raster.setPixel(x, z, getPixelAt(world, min_x + x, min_z + z));
+			buffer.setRGB(x, z, getPixelAt(world, min_x + x, min_z + z));
 
 		return buffer;
 	}
 
-	private static int[] getPixelAt(World world, int x, int z)
+	private static int getPixelAt(World world, int x, int z)
 	{
 		Block block = getHighestBlockAt(world, x, z);
-		int[] color = blockColors.get(BlockData.fromBlock(block));
-		return color == null ? new int[]{ 0, 0, 0, 0 } : color;
+		return getColor(block.getTypeId(), block.getData());
 	}
 
 	private static Block getHighestBlockAt(World world, int x, int z)
 	{ return world.getHighestBlockAt(x, z).getRelative(0, -1, 0); }
 
+	/**
+	 * Renders a map image in the background and saves it as a PNG. Chunk snapshots are
+	 * taken on the main thread a few at a time, and pixels are filled in by a pool of
+	 * worker threads. May be called from any thread.
+	 *
+	 * @param dest file to write the image to
+	 * @return future for the written file
+	 */
+	public static ListenableFuture<File> render(World world,
+		int min_x, int max_x, int min_z, int max_z, File dest)
+	{
+		SettableFuture<File> future = SettableFuture.create();
+		new RenderTask(world, min_x, max_x, min_z, max_z, dest, future)
+			.runTaskTimer(AutoReferee.getInstance(), 0L, 1L);
+		return future;
+	}
+
+	/**
+	 * Copies a previously rendered map image to a destination, rendering the image
+	 * first if it has not been cached. Runs in the background.
+	 *
+	 * @param cached cached copy of the image
+	 * @param dest file to copy the image to
+	 * @return future for the destination file
+	 */
+	public static ListenableFuture<File> renderCached(final World world,
+		final int min_x, final int max_x, final int min_z, final int max_z, final File cached, final File dest)
+	{
+		final SettableFuture<File> future = SettableFuture.create();
+		final ListenableFuture<File> rendered = renderOnce(world, min_x, max_x, min_z, max_z, cached);
+
+		new BukkitRunnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					if (rendered != null) rendered.get();
+					FileUtils.copyFile(cached, dest);
+					future.set(dest);
+				}
+				catch (Exception e) { future.setException(e); }
+			}
+		}.runTaskAsynchronously(AutoReferee.getInstance());
+		return future;
+	}
+
+	// renders in progress, by cache file, so matches on the same map share one render
+	private static final Map<File, ListenableFuture<File>> rendering = Maps.newHashMap();
+
+	// starts rendering the cached image unless it exists or is already being rendered
+	private static synchronized ListenableFuture<File> renderOnce(World world,
+		int min_x, int max_x, int min_z, int max_z, final File cached)
+	{
+		ListenableFuture<File> rendered = rendering.get(cached);
+		if (rendered != null || cached.exists()) return rendered;
+
+		rendering.put(cached, rendered = render(world, min_x, max_x, min_z, max_z, cached));
+		rendered.addListener(new Runnable()
+		{
+			public void run()
+			{ synchronized (MapImageGenerator.class) { rendering.remove(cached); } }
+		}, MoreExecutors.sameThreadExecutor());
+		return rendered;
+	}
+
+	private static class RenderTask extends BukkitRunnable
+	{
+		private final World world;
+		private final int min_x, min_z, w, h;
+
+		private final File dest;
+		private final SettableFuture<File> future;
+
+		private final int[] pixels;
+		private final Iterator<int[]> chunks;
+		private final AtomicInteger remaining;
+		private final ExecutorService workers;
+
+		RenderTask(World world, int min_x, int max_x, int min_z, int max_z,
+			File dest, SettableFuture<File> future)
+		{
+			this.world = world;
+			this.min_x = min_x; this.w = max_x - min_x + 1;
+			this.min_z = min_z; this.h = max_z - min_z + 1;
+
+			this.dest = dest;
+			this.future = future;
+
+			List<int[]> chunklist = Lists.newArrayList();
+			for (int cx = min_x >> 4; cx <= max_x >> 4; ++cx)
+				for (int cz = min_z >> 4; cz <= max_z >> 4; ++cz)
+					chunklist.add(new int[]{ cx, cz });
+
+			this.pixels = new int[w * h];
+			this.chunks = chunklist.iterator();
+			this.remaining = new AtomicInteger(chunklist.size());
+			this.workers = Executors.newFixedThreadPool(
+				Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+		}
+
+		@Override
+		public void run()
+		{
+			long deadline = System.nanoTime() + TICK_BUDGET;
+			try
+			{
+				while (chunks.hasNext())
+				{
+					int[] c = chunks.next();
+					final ChunkSnapshot snap = world.getChunkAt(c[0], c[1])
+						.getChunkSnapshot(true, false, false);
+
+					workers.execute(new Runnable()
+					{
+						public void run()
+						{
+							try { renderChunk(snap); }
+							catch (Throwable t) { future.setException(t); }
+							if (remaining.decrementAndGet() == 0) finish();
+						}
+					});
+
+					if (System.nanoTime() > deadline) return;
+				}
+			}
+			catch (Throwable t) { future.setException(t); }
+
+			// all snapshots have been taken, let the workers wind down
+			workers.shutdown();
+			this.cancel();
+		}
+
+		private void renderChunk(ChunkSnapshot snap)
+		{
+			int bx = snap.getX() << 4, bz = snap.getZ() << 4;
+			for (int lx = 0; lx < 16; ++lx)
+			for (int lz = 0; lz < 16; ++lz)
+			{
+				int x = bx + lx - min_x, z = bz + lz - min_z;
+				if (x < 0 || z < 0 || x >= w || z >= h) continue;
+
+				int y = snap.getHighestBlockYAt(lx, lz) - 1;
+				if (y < 0) continue;
+
+				pixels[z * w + x] = getColor(snap.getBlockTypeId(lx, y, lz), snap.getBlockData(lx, y, lz));
+			}
+		}
+
+		// called by the worker that renders the last chunk
+		private void finish()
+		{
+			if (future.isDone()) return;
+			try
+			{
+				BufferedImage buffer = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+				buffer.setRGB(0, 0, w, h, pixels, 0, w);
+
+				File parent = dest.getParentFile();
+				if (parent != null && !parent.exists()) FileUtils.forceMkdir(parent);
+
+				// write to a temporary file so a partial image is never read
+				File temp = File.createTempFile(dest.getName(), ".tmp", parent);
+				ImageIO.write(buffer, "png", temp);
+				if (dest.exists()) FileUtils.deleteQuietly(dest);
+				FileUtils.moveFile(temp, dest);
+				future.set(dest);
+			}
+			catch (IOException e) { future.setException(e); }
+		}
+	}
+
 	public static String imageToDataURI(File file, String type)
 	{
 		try
@@ -0,0 +1,33 @@
+package org.mctourney.autoreferee.util;
+
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * A task which is timed by the {@link Profiler} while profiling is turned on, under
+ * the name of its class. Subclasses implement {@link #tick()} instead of run().
+ */
+public abstract class ProfiledRunnable extends BukkitRunnable
+{
+	public final void run()
+	{
+		if (!Profiler.isEnabled()) { tick(); return; }
+
+		long start = System.nanoTime();
+		try { tick(); }
+		finally { Profiler.record(getProfiledWorld(), getClass().getSimpleName(), System.nanoTime() - start); }
+	}
+
+	/**
+	 * Runs this task.
+	 */
+	protected abstract void tick();
+
+	/**
+	 * Gets the world this task's timings are kept under.
+	 *
+	 * @return world this task belongs to, or null if none
+	 */
+	protected World getProfiledWorld()
+	{ return null; }
+}
@@ -0,0 +1,345 @@
+package org.mctourney.autoreferee.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Entity;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockEvent;
+import org.bukkit.event.entity.EntityEvent;
+import org.bukkit.event.hanging.HangingEvent;
+import org.bukkit.event.inventory.InventoryEvent;
+import org.bukkit.event.player.PlayerEvent;
+import org.bukkit.event.vehicle.VehicleEvent;
+import org.bukkit.event.weather.WeatherEvent;
+import org.bukkit.event.world.WorldEvent;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Times event handlers and tasks while profiling is turned on. Timings are kept by
+ * world, so the handlers slowing down one match can be told apart from another, and
+ * by handler or task name. While profiling is off, the only cost is checking whether
+ * it is on.
+ */
+public class Profiler
+{
+	// scope for timings which don't belong to any one world
+	public static final String GLOBAL = "*";
+
+	private static volatile boolean enabled = false;
+
+	// timings by scope, then by name
+	private static final ConcurrentMap<String, ConcurrentMap<String, Timing>> timings =
+		Maps.newConcurrentMap();
+
+	/**
+	 * Call counts and a histogram of durations for a single handler or task.
+	 * Durations are bucketed by powers of two nanoseconds.
+	 */
+	public static class Timing
+	{
+		// counters are striped by thread, so threads don't contend on the same counter
+		private static final int STRIPES = 4;
+
+		private static final int BUCKETS = 36;
+		private static final int TOTAL = BUCKETS, MAX = BUCKETS + 1;
+
+		// padded so that stripes don't share a cache line
+		private static final int WIDTH = BUCKETS + 12;
+
+		private final String name;
+		private final AtomicLongArray cells = new AtomicLongArray(STRIPES * WIDTH);
+
+		Timing(String name)
+		{ this.name = name; }
+
+		void record(long nanos)
+		{
+			int base = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * WIDTH;
+			int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos | 1L));
+
+			cells.incrementAndGet(base + bucket);
+			cells.addAndGet(base + TOTAL, nanos);
+
+			long max;
+			while (nanos > (max = cells.get(base + MAX)) && !cells.compareAndSet(base + MAX, max, nanos));
+		}
+
+		private long sum(int offset)
+		{
+			long sum = 0L;
+			for (int s = 0; s < STRIPES; ++s) sum += cells.get(s * WIDTH + offset);
+			return sum;
+		}
+
+		public String getName()
+		{ return name; }
+
+		/**
+		 * Gets the number of times this handler or task has run.
+		 *
+		 * @return number of calls
+		 */
+		public long getCount()
+		{
+			long count = 0L;
+			for (int b = 0; b < BUCKETS; ++b) count += sum(b);
+			return count;
+		}
+
+		/**
+		 * Gets the total time spent in this handler or task.
+		 *
+		 * @return total time in nanoseconds
+		 */
+		public long getTotal()
+		{ return sum(TOTAL); }
+
+		/**
+		 * Gets the longest time spent in a single call.
+		 *
+		 * @return longest call in nanoseconds
+		 */
+		public long getMax()
+		{
+			long max = 0L;
+			for (int s = 0; s < STRIPES; ++s) max = Math.max(max, cells.get(s * WIDTH + MAX));
+			return max;
+		}
+
+		/**
+		 * Estimates a percentile of call durations, accurate to within a factor of two.
+		 *
+		 * @param p percentile, between 0.0 and 1.0
+		 * @return upper bound of the duration at this percentile, in nanoseconds
+		 */
+		public long getPercentile(double p)
+		{
+			long[] counts = new long[BUCKETS];
+			long count = 0L;
+			for (int b = 0; b < BUCKETS; ++b) count += counts[b] = sum(b);
+
+			long rank = (long) Math.ceil(p * count), seen = 0L;
+			for (int b = 0; b < BUCKETS; ++b)
+				if ((seen += counts[b]) >= rank && seen > 0L) return Math.min(2L << b, getMax());
+			return 0L;
+		}
+
+		@Override
+		public String toString()
+		{
+			long count = getCount();
+			return String.format("%s: %d calls, %.2fms total, %.1fus avg, %.1fus p99, %.1fus max",
+				name, count, getTotal() / 1e6, count == 0 ? 0.0 : getTotal() / 1e3 / count,
+				getPercentile(0.99) / 1e3, getMax() / 1e3);
+		}
+	}
+
+	private static final Comparator<Timing> BY_TOTAL = new Comparator<Timing>()
+	{
+		public int compare(Timing a, Timing b)
+		{ return Long.valueOf(b.getTotal()).compareTo(a.getTotal()); }
+	};
+
+	/**
+	 * Checks if profiling is turned on.
+	 *
+	 * @return true if handlers and tasks are being timed
+	 */
+	public static boolean isEnabled()
+	{ return enabled; }
+
+	/**
+	 * Turns profiling on or off. Timings collected so far are kept.
+	 *
+	 * @param enabled true to start timing handlers and tasks
+	 */
+	public static void setEnabled(boolean enabled)
+	{ Profiler.enabled = enabled; }
+
+	/**
+	 * Discards all timings collected so far.
+	 */
+	public static void reset()
+	{ timings.clear(); }
+
+	/**
+	 * Records a single call to a handler or task.
+	 *
+	 * @param world world the call belongs to, or null if none
+	 * @param name name of the handler or task
+	 * @param nanos duration of the call in nanoseconds
+	 */
+	public static void record(World world, String name, long nanos)
+	{
+		String scope = world == null ? GLOBAL : world.getName();
+
+		ConcurrentMap<String, Timing> scoped = timings.get(scope);
+		if (scoped == null)
+		{
+			ConcurrentMap<String, Timing> created = Maps.newConcurrentMap();
+			scoped = timings.putIfAbsent(scope, created);
+			if (scoped == null) scoped = created;
+		}
+
+		Timing timing = scoped.get(name);
+		if (timing == null)
+		{
+			Timing created = new Timing(name);
+			timing = scoped.putIfAbsent(name, created);
+			if (timing == null) timing = created;
+		}
+
+		timing.record(nanos);
+	}
+
+	/**
+	 * Gets the scopes which have timings, either world names or {@link #GLOBAL}.
+	 *
+	 * @return scope names
+	 */
+	public static Set<String> getScopes()
+	{ return Sets.newTreeSet(timings.keySet()); }
+
+	/**
+	 * Gets the timings for a scope, most total time first.
+	 *
+	 * @param scope world name, or {@link #GLOBAL}
+	 * @return timings, possibly empty
+	 */
+	public static List<Timing> getTimings(String scope)
+	{
+		ConcurrentMap<String, Timing> scoped = timings.get(scope);
+		if (scoped == null) return Collections.emptyList();
+
+		List<Timing> list = Lists.newArrayList(scoped.values());
+		Collections.sort(list, BY_TOTAL);
+		return list;
+	}
+
+	/**
+	 * Writes all timings to a file, grouped by scope.
+	 *
+	 * @param file file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void dump(File file) throws IOException
+	{
+		PrintWriter out = null;
+		try
+		{
+			out = new PrintWriter(new FileWriter(file));
+			for (String scope : getScopes())
+			{
+				out.println("[" + scope + "]");
+				for (Timing timing : getTimings(scope)) out.println(timing);
+				out.println();
+			}
+			if (out.checkError()) throw new IOException("Could not write " + file);
+		}
+		finally { IOUtils.closeQuietly(out); }
+	}
+
+	/**
+	 * Registers the event handlers of a listener, timing each handler while profiling
+	 * is turned on. Used in place of PluginManager.registerEvents.
+	 *
+	 * @param listener listener to register
+	 * @param plugin plugin registering the listener
+	 */
+	@SuppressWarnings("unchecked")
+	public static void registerEvents(Listener listener, Plugin plugin)
+	{
+		Set<Method> methods = Sets.newHashSet(listener.getClass().getMethods());
+		methods.addAll(Sets.newHashSet(listener.getClass().getDeclaredMethods()));
+
+		for (Method method : methods)
+		{
+			EventHandler handler = method.getAnnotation(EventHandler.class);
+			if (handler == null || method.isBridge() || method.isSynthetic()) continue;
+
+			Class<?>[] params = method.getParameterTypes();
+			if (params.length != 1 || !Event.class.isAssignableFrom(params[0]))
+			{
+				plugin.getLogger().severe("Invalid event handler: " + method);
+				continue;
+			}
+
+			method.setAccessible(true);
+			Class<? extends Event> eventClass = (Class<? extends Event>) params[0];
+			String name = listener.getClass().getSimpleName() + "." + method.getName();
+
+			plugin.getServer().getPluginManager().registerEvent(eventClass, listener, handler.priority(),
+				new TimedExecutor(method, eventClass, name), plugin, handler.ignoreCancelled());
+		}
+	}
+
+	private static class TimedExecutor implements EventExecutor
+	{
+		private final Method method;
+		private final Class<? extends Event> eventClass;
+		private final String name;
+
+		TimedExecutor(Method method, Class<? extends Event> eventClass, String name)
+		{ this.method = method; this.eventClass = eventClass; this.name = name; }
+
+		public void execute(Listener listener, Event event) throws EventException
+		{
+			// handlers also receive subclasses of their event, so check like Bukkit does
+			if (!eventClass.isInstance(event)) return;
+			try
+			{
+				if (!enabled) { method.invoke(listener, event); return; }
+
+				long start = System.nanoTime();
+				try { method.invoke(listener, event); }
+				finally { record(getWorld(event), name, System.nanoTime() - start); }
+			}
+			catch (InvocationTargetException e) { throw new EventException(e.getCause()); }
+			catch (Throwable t) { throw new EventException(t); }
+		}
+	}
+
+	// world an event happened in, or null (global) if it cannot be determined
+	private static World getWorld(Event event)
+	{
+		if (event instanceof WorldEvent) return ((WorldEvent) event).getWorld();
+		if (event instanceof WeatherEvent) return ((WeatherEvent) event).getWorld();
+		if (event instanceof BlockEvent)
+		{
+			Block block = ((BlockEvent) event).getBlock();
+			return block == null ? null : block.getWorld();
+		}
+
+		// some events, such as explosions with no source, have no entity
+		Entity entity = null;
+		if (event instanceof PlayerEvent) entity = ((PlayerEvent) event).getPlayer();
+		else if (event instanceof EntityEvent) entity = ((EntityEvent) event).getEntity();
+		else if (event instanceof InventoryEvent) entity = ((InventoryEvent) event).getView().getPlayer();
+		else if (event instanceof VehicleEvent) entity = ((VehicleEvent) event).getVehicle();
+		else if (event instanceof HangingEvent) entity = ((HangingEvent) event).getEntity();
+		return entity == null ? null : entity.getWorld();
+	}
+}
@@ -1,18 +1,23 @@
 package org.mctourney.autoreferee.util;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.text.DateFormat;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.concurrent.TimeUnit;
 
 import com.google.gson.Gson;
+import org.apache.commons.codec.binary.Base64InputStream;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 
@@ -27,6 +32,7 @@ import org.mctourney.autoreferee.AutoRefMatch;
 import org.mctourney.autoreferee.AutoRefPlayer;
 import org.mctourney.autoreferee.AutoRefTeam;
 import org.mctourney.autoreferee.AutoReferee;
+import org.mctourney.autoreferee.TranscriptJournal;
 import org.mctourney.autoreferee.AutoRefMatch.TranscriptEvent;
 import org.mctourney.autoreferee.goals.AutoRefGoal;
 
@@ -45,6 +51,9 @@ public class ReportGenerator
 	public ReportGenerator()
 	{  }
 
+	// seconds to wait for the map image to finish rendering
+	private static final long MAP_IMAGE_TIMEOUT = 30L;
+
 	private Map<String, String> customDetails = Maps.newLinkedHashMap();
 
 	/**
@@ -57,6 +66,24 @@ public class ReportGenerator
 	public void setCustomDetail(String key, String value)
 	{ customDetails.put(key, value); }
 
+	// compiled report template and static resources, loaded once
+	private static ReportTemplate template = null;
+	private static String baseStyles, baseScript;
+
+	private static synchronized ReportTemplate getTemplate() throws IOException
+	{
+		if (template == null)
+		{
+			baseStyles = getResourceString("webstats/report.css").replaceAll("\\s+", " ")
+				+ getResourceString("webstats/image-block.css")
+				+ getResourceString("webstats/image-header.css");
+		//		+ getResourceString("webstats/image-items.css");
+			baseScript = getResourceString("webstats/report.js");
+			template = new ReportTemplate(getResourceString("webstats/report.htm"));
+		}
+		return template;
+	}
+
 	/**
 	 * Generates a match report web page from a match object.
 	 *
@@ -65,25 +92,31 @@ public class ReportGenerator
 	 */
 	public String generate(AutoRefMatch match)
 	{
-		String htm, css, js, images = "";
-		try
-		{
-			htm = getResourceString("webstats/report.htm");
-			css = getResourceString("webstats/report.css");
-			js  = getResourceString("webstats/report.js" );
-
-			images += getResourceString("webstats/image-block.css");
-			images += getResourceString("webstats/image-header.css");
-		//	images += getResourceString("webstats/image-items.css");
-		}
+		StringWriter out = new StringWriter();
+		try { generate(match, out); }
 		catch (IOException e) { return null; }
+		return out.toString();
+	}
+
+	/**
+	 * Writes a match report web page for a match object. The transcript and player
+	 * statistics are written as they are generated, rather than being built up first.
+	 *
+	 * @param match match object
+	 * @param out writer receiving the HTML for a match report web page
+	 * @throws IOException if the template cannot be loaded, or the writer fails
+	 */
+	public void generate(final AutoRefMatch match, Writer out) throws IOException
+	{
+		ReportTemplate htm = getTemplate();
+		List<TranscriptEvent> events = match.getTranscript();
 
-		StringWriter transcript = new StringWriter();
+		// the length of the match comes from the last event other than the end of the match
 		TranscriptEvent endEvent = null;
-		for (TranscriptEvent e : match.getTranscript())
+		for (ListIterator<TranscriptEvent> iter = events.listIterator(events.size()); iter.hasPrevious(); )
 		{
-			transcript.write(transcriptEventHTML(match, e));
-			if (e.getType() != TranscriptEvent.EventType.MATCH_END) endEvent = e;
+			TranscriptEvent e = iter.previous();
+			if (e.getType() != TranscriptEvent.EventType.MATCH_END) { endEvent = e; break; }
 		}
 
 		AutoRefTeam win = match.getWinningTeam();
@@ -103,48 +136,83 @@ public class ReportGenerator
 		for (Map.Entry<String, String> e : this.customDetails.entrySet())
 			extraRows.add(String.format("<tr><th>%s</th><td>%s</td></tr>", e.getKey(), e.getValue()));
 
-		File mapImage = new File(match.getWorld().getWorldFolder(), "map.png");
-		if (!mapImage.exists()) match.saveMapImage();
-		Location ptMin = match.getMapCuboid().getMinimumPoint();
+		// the map image is rendered in the background, wait for it if necessary
+		final File mapImage = match.getMapImageFile();
+		try { match.saveMapImage().get(MAP_IMAGE_TIMEOUT, TimeUnit.SECONDS); }
+		catch (Exception e) { AutoReferee.log("Map image unavailable: " + e.getMessage()); }
+		final Location ptMin = match.getMapCuboid().getMinimumPoint();
+
+		Map<String, ReportTemplate.Section> sections = Maps.newHashMap();
+
+		// base files, followed by the team, player, and block styles
+		sections.put("base-css", ReportTemplate.text(baseStyles));
+		sections.put("base-js", ReportTemplate.text(baseScript));
+		sections.put("team-css", ReportTemplate.text(getTeamStyles(match).replaceAll("\\s+", " ")));
+		sections.put("plyr-css", ReportTemplate.text(getPlayerStyles(match).replaceAll("\\s+", " ")));
+		sections.put("blok-css", ReportTemplate.text(getBlockStyles(match).replaceAll("\\s+", " ")));
+		sections.put("map-data", new ReportTemplate.Section()
+		{
+			public void write(Writer out) throws IOException
+			{
+				out.write("{image:'");
+				writeDataURI(out, mapImage, "image/png");
+				out.write(String.format("', x:%d, z:%d}", ptMin.getBlockX(), ptMin.getBlockZ()));
+			}
+		});
 
-		return (htm
-			// base files get replaced first
-			.replaceAll("#base-css#", css.replaceAll("\\s+", " ") + images)
-			.replaceAll("#base-js#", Matcher.quoteReplacement(js))
+		// then match and map names
+		sections.put("title", ReportTemplate.text(match.getMatchName()));
+		sections.put("map", ReportTemplate.text(match.getMapName()));
 
-			// followed by the team, player, and block styles
-			.replaceAll("#team-css#", getTeamStyles(match).replaceAll("\\s+", " "))
-			.replaceAll("#plyr-css#", getPlayerStyles(match).replaceAll("\\s+", " "))
-			.replaceAll("#blok-css#", getBlockStyles(match).replaceAll("\\s+", " "))
-			.replaceAll("#map-data#", String.format("{image:'%s', x:%d, z:%d}",
-				MapImageGenerator.imageToDataURI(mapImage, "image/png"), ptMin.getBlockX(), ptMin.getBlockZ()))
+		// date and length of match
+		sections.put("date", ReportTemplate.text(DateFormat.getDateTimeInstance(
+			DateFormat.MEDIUM, DateFormat.FULL).format(new Date())));
+		sections.put("length", ReportTemplate.text(endEvent == null ? "??" : endEvent.getTimestamp()));
 
-			// then match and map names
-			.replaceAll("#title#", match.getMatchName())
-			.replaceAll("#map#", match.getMapName())
+		// team information (all teams, and winning team)
+		sections.put("teams", ReportTemplate.text(getTeamList(match)));
+		sections.put("winners", ReportTemplate.text(winningTeam));
 
-			// date and length of match
-			.replaceAll("#date#", DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.FULL).format(new Date()))
-			.replaceAll("#length#", endEvent == null ? "??" : endEvent.getTimestamp())
+		// staff information
+		sections.put("referees", ReportTemplate.text(StringUtils.join(refList, ", ")));
+		sections.put("streamers", ReportTemplate.text(StringUtils.join(streamerList, ", ")));
 
-			// team information (all teams, and winning team)
-			.replaceAll("#teams#", getTeamList(match))
-			.replaceAll("#winners#", winningTeam)
+		// filter settings and additional (custom) details
+		sections.put("filter-options", ReportTemplate.text(getFilterOptions()));
+		sections.put("xtra-details", ReportTemplate.text(StringUtils.join(extraRows, "\n")));
 
-			// staff information
-			.replaceAll("#referees#", StringUtils.join(refList, ", "))
-			.replaceAll("#streamers#", StringUtils.join(streamerList, ", "))
+		// and last, the transcript and stats, written a row at a time
+		sections.put("transcript", new ReportTemplate.Section()
+		{
+			public void write(Writer out) throws IOException
+			{
+				final Writer rows = out;
+				match.getTranscriptJournal().replay(new TranscriptJournal.Visitor()
+				{
+					public void visit(TranscriptEvent e) throws IOException
+					{ rows.write(transcriptEventHTML(match, e)); }
+				});
+			}
+		});
+		sections.put("plyr-stats", new ReportTemplate.Section()
+		{
+			public void write(Writer out) throws IOException
+			{ writePlayerStats(match, out); }
+		});
 
-			// filter settings
-			.replaceAll("#filter-options", getFilterOptions())
+		htm.render(out, sections);
+		out.flush();
+	}
 
-			// addition details (custom?)
-			.replaceAll("#xtra-details#", StringUtils.join(extraRows, "\n"))
+	// writes a file as a base64 data URI, without reading it into memory first
+	private static void writeDataURI(Writer out, File file, String type) throws IOException
+	{
+		out.write("data:" + type + ";base64,");
+		if (file == null || !file.exists()) return;
 
-			// and last, throw in the transcript and stats
-			.replaceAll("#transcript#", transcript.toString())
-			.replaceAll("#plyr-stats#", getPlayerStats(match))
-		);
+		InputStream in = new Base64InputStream(new FileInputStream(file), true, 0, null);
+		try { IOUtils.copy(in, out, "US-ASCII"); }
+		finally { IOUtils.closeQuietly(in); }
 	}
 
 	private static String getFilterOptions()
@@ -184,27 +252,28 @@ public class ReportGenerator
 		return css.toString();
 	}
 
-	private static Map<BlockData, Integer> terrain_png = Maps.newHashMap();
+	// keyed by packed block data, see BlockData.toKey()
+	private static IntIntMap terrain_png = new IntIntMap();
 	private static int terrain_png_size = 16;
 
 	static
 	{
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.WHITE.getWoolData()), 4 * 16 + 0);
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.BLACK.getWoolData()), 7 * 16 + 1);
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.GRAY.getWoolData()), 7 * 16 + 2);
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.RED.getWoolData()), 8 * 16 + 1);
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.PINK.getWoolData()), 8 * 16 + 2);
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.GREEN.getWoolData()), 9 * 16 + 1);
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.LIME.getWoolData()), 9 * 16 + 2);
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.BROWN.getWoolData()), 10 * 16 + 1);
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.YELLOW.getWoolData()), 10 * 16 + 2);
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.BLUE.getWoolData()), 11 * 16 + 1);
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.LIGHT_BLUE.getWoolData()), 11 * 16 + 2);
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.PURPLE.getWoolData()), 12 * 16 + 1);
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.MAGENTA.getWoolData()), 12 * 16 + 2);
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.CYAN.getWoolData()), 13 * 16 + 1);
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.ORANGE.getWoolData()), 13 * 16 + 2);
-		terrain_png.put(new BlockData(Material.WOOL, DyeColor.SILVER.getWoolData()), 14 * 16 + 1);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.WHITE.getWoolData()), 4 * 16 + 0);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.BLACK.getWoolData()), 7 * 16 + 1);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.GRAY.getWoolData()), 7 * 16 + 2);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.RED.getWoolData()), 8 * 16 + 1);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.PINK.getWoolData()), 8 * 16 + 2);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.GREEN.getWoolData()), 9 * 16 + 1);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.LIME.getWoolData()), 9 * 16 + 2);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.BROWN.getWoolData()), 10 * 16 + 1);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.YELLOW.getWoolData()), 10 * 16 + 2);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.BLUE.getWoolData()), 11 * 16 + 1);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.LIGHT_BLUE.getWoolData()), 11 * 16 + 2);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.PURPLE.getWoolData()), 12 * 16 + 1);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.MAGENTA.getWoolData()), 12 * 16 + 2);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.CYAN.getWoolData()), 13 * 16 + 1);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.ORANGE.getWoolData()), 13 * 16 + 2);
+		terrain_png.put(BlockData.key(Material.WOOL.getId(), DyeColor.SILVER.getWoolData()), 14 * 16 + 1);
 	}
 
 	private static Map<Material, Integer> items_png = Maps.newHashMap();
@@ -274,13 +343,13 @@ public class ReportGenerator
 		StringWriter css = new StringWriter();
 		for (BlockData bd : blocks)
 		{
-			Integer x = terrain_png.get(bd);
+			int x = terrain_png.get(bd.toKey(), -1);
 
 			String selector = String.format(".block.mat-%d.data-%d",
 				bd.getMaterial().getId(), (int) bd.getData());
 			css.write(selector + ":before ");
 
-			if (x == null) css.write("{ display: none; }\n");
+			if (x < 0) css.write("{ display: none; }\n");
 			else css.write(String.format("{ background-position: -%dpx -%dpx; }\n",
 				terrain_png_size * (x % 16), terrain_png_size * (x / 16)));
 
@@ -339,7 +408,7 @@ public class ReportGenerator
 		}
 	};
 
-	private static String getPlayerStats(AutoRefMatch match)
+	private static void writePlayerStats(AutoRefMatch match, Writer playerstats) throws IOException
 	{
 		List<AutoRefPlayer> players = Lists.newArrayList(match.getCachedPlayers());
 		Collections.sort(players, new Comparator<AutoRefPlayer>()
@@ -349,7 +418,6 @@ public class ReportGenerator
 		});
 
 		int rank = 0;
-		StringWriter playerstats = new StringWriter();
 		for (AutoRefPlayer apl : players)
 		{
 			// get nemesis of this player
@@ -363,8 +431,6 @@ public class ReportGenerator
 			playerstats.write(String.format("<td>%s</td></tr>\n",
 				nms == null ? "none" : playerHTML(nms)));
 		}
-
-		return playerstats.toString();
 	}
 
 	private static String getTag(String s)
@@ -0,0 +1,82 @@
+package org.mctourney.autoreferee.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A template which has been split into literal text and #placeholder# names, so that
+ * it can be rendered straight to a writer without any intermediate strings.
+ */
+public class ReportTemplate
+{
+	private static final Pattern PLACEHOLDER = Pattern.compile("#([a-z][a-z-]*)#");
+
+	/**
+	 * Content written in place of a placeholder.
+	 */
+	public interface Section
+	{
+		public void write(Writer out) throws IOException;
+	}
+
+	// alternating literal text and placeholder names, starting with literal text
+	private final List<String> parts = Lists.newArrayList();
+
+	/**
+	 * Compiles a template.
+	 *
+	 * @param template template text, containing #placeholder# names
+	 */
+	public ReportTemplate(String template)
+	{
+		Matcher m = PLACEHOLDER.matcher(template);
+		int last = 0; while (m.find())
+		{
+			parts.add(template.substring(last, m.start()));
+			parts.add(m.group(1));
+			last = m.end();
+		}
+		parts.add(template.substring(last));
+	}
+
+	/**
+	 * Renders this template. Placeholders without a matching section are written as-is.
+	 *
+	 * @param out writer receiving the rendered template
+	 * @param sections content for each placeholder, keyed by placeholder name
+	 * @throws IOException if the writer fails
+	 */
+	public void render(Writer out, Map<String, Section> sections) throws IOException
+	{
+		for (int i = 0; i < parts.size(); ++i)
+		{
+			String part = parts.get(i);
+			if (i % 2 == 0) { out.write(part); continue; }
+
+			Section section = sections.get(part);
+			if (section != null) section.write(out);
+			else out.write("#" + part + "#");
+		}
+	}
+
+	/**
+	 * Creates a section which writes a fixed string.
+	 *
+	 * @param text text to be written, null is written as an empty string
+	 * @return section for this text
+	 */
+	public static Section text(final String text)
+	{
+		return new Section()
+		{
+			public void write(Writer out) throws IOException
+			{ if (text != null) out.write(text); }
+		};
+	}
+}
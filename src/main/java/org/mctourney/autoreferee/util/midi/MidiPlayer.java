@@ -0,0 +1,129 @@
+package org.mctourney.autoreferee.util.midi;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import org.mctourney.autoreferee.AutoReferee;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Plays compiled songs from a single task on the main thread. Every song being played,
+ * for any number of listeners, is advanced by the same task once per tick, and the
+ * notes which fall on a tick are played to each listener together. The task only runs
+ * while something is playing.
+ */
+public class MidiPlayer
+{
+	private static class Playback
+	{
+		final MidiSong song;
+		final List<Player> listeners;
+		final float tempo;
+
+		// tick this playback started on, and the next note to play
+		long start = -1L;
+		int cursor = 0;
+
+		Playback(MidiSong song, Collection<Player> listeners, float tempo)
+		{
+			this.song = song;
+			this.listeners = Lists.newArrayList(listeners);
+			this.tempo = tempo;
+		}
+	}
+
+	// playbacks waiting to be picked up by the task, which may be added from any thread
+	private static final Queue<Playback> starting = new ConcurrentLinkedQueue<Playback>();
+
+	// only touched from the main thread
+	private static final List<Playback> playing = Lists.newLinkedList();
+	private static long tick = 0L;
+
+	private static BukkitRunnable task = null;
+
+	/**
+	 * Plays a song for a group of players, starting on the next tick.
+	 *
+	 * @param song compiled song
+	 * @param tempo speed to play the song at, where 1.0 is normal speed
+	 * @param listeners players to play the song for
+	 */
+	public static void play(MidiSong song, float tempo, Collection<Player> listeners)
+	{
+		if (song.size() == 0 || listeners.isEmpty()) return;
+		starting.add(new Playback(song, listeners, tempo));
+		start();
+	}
+
+	private static synchronized void start()
+	{
+		if (task != null) return;
+		task = new BukkitRunnable()
+		{
+			@Override
+			public void run()
+			{ advance(); }
+		};
+		task.runTaskTimer(AutoReferee.getInstance(), 1L, 1L);
+	}
+
+	private static synchronized boolean stop()
+	{
+		// something may have been queued after the last check
+		if (!starting.isEmpty()) return false;
+
+		task.cancel();
+		task = null;
+		return true;
+	}
+
+	/**
+	 * Stops all songs which are playing.
+	 */
+	public static synchronized void stopAll()
+	{
+		starting.clear();
+		playing.clear();
+		if (task != null) { task.cancel(); task = null; }
+	}
+
+	private static void advance()
+	{
+		++tick;
+		for (Playback p; (p = starting.poll()) != null; ) { p.start = tick; playing.add(p); }
+
+		for (Iterator<Playback> iter = playing.iterator(); iter.hasNext(); )
+		{
+			Playback p = iter.next();
+			MidiSong song = p.song;
+
+			// find the notes which fall on this tick
+			int position = (int) ((tick - p.start) * p.tempo);
+			int end = p.cursor;
+			while (end < song.size() && song.ticks[end] <= position) ++end;
+
+			if (end > p.cursor) for (Iterator<Player> liter = p.listeners.iterator(); liter.hasNext(); )
+			{
+				Player player = liter.next();
+				if (!player.isOnline()) { liter.remove(); continue; }
+
+				Location loc = player.getLocation();
+				for (int i = p.cursor; i < end; ++i)
+					player.playSound(loc, song.instruments[i], song.volumes[i], song.pitches[i]);
+			}
+
+			p.cursor = end;
+			if (p.cursor >= song.size() || p.listeners.isEmpty()) iter.remove();
+		}
+
+		if (playing.isEmpty()) stop();
+	}
+}
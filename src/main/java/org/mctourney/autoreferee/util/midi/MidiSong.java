@@ -0,0 +1,191 @@
+package org.mctourney.autoreferee.util.midi;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import org.bukkit.Sound;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A midi file compiled into a schedule of notes, indexed by server tick. Notes are
+ * kept sorted by tick in parallel arrays, with the instrument, pitch, and volume of
+ * each note already worked out, so playing a note is just an array lookup.
+ */
+public class MidiSong
+{
+	// server ticks per second
+	private static final double TICKS_PER_SECOND = 20.0;
+
+	private static final int META_TEMPO = 0x51;
+	private static final int DEFAULT_TEMPO = 500000; // microseconds per quarter note
+
+	private static final float VOLUME_RANGE = 10.0f;
+
+	// compiled songs, by file path
+	private static final Map<String, MidiSong> cache = Maps.newHashMap();
+
+	private final long lastModified;
+
+	final int[] ticks;
+	final Sound[] instruments;
+	final float[] pitches;
+	final float[] volumes;
+
+	private MidiSong(int size, long lastModified)
+	{
+		this.lastModified = lastModified;
+		this.ticks = new int[size];
+		this.instruments = new Sound[size];
+		this.pitches = new float[size];
+		this.volumes = new float[size];
+	}
+
+	/**
+	 * Gets the number of notes in this song.
+	 *
+	 * @return number of notes
+	 */
+	public int size()
+	{ return ticks.length; }
+
+	/**
+	 * Gets the length of this song.
+	 *
+	 * @return server tick of the last note
+	 */
+	public int getLength()
+	{ return ticks.length == 0 ? 0 : ticks[ticks.length - 1]; }
+
+	/**
+	 * Loads a compiled song, compiling it if it has not been loaded before or the
+	 * file has changed since.
+	 *
+	 * @param file midi file
+	 * @return compiled song
+	 * @throws InvalidMidiDataException if the file is not a valid midi file
+	 * @throws IOException if the file cannot be read
+	 */
+	public static MidiSong load(File file)
+		throws InvalidMidiDataException, IOException
+	{
+		String key = file.getAbsolutePath();
+		synchronized (cache)
+		{
+			MidiSong song = cache.get(key);
+			if (song != null && song.lastModified == file.lastModified()) return song;
+		}
+
+		MidiSong song = compile(MidiSystem.getSequence(file), file.lastModified());
+		synchronized (cache) { cache.put(key, song); }
+		return song;
+	}
+
+	/**
+	 * Compiles a song from a stream. Songs loaded from a stream are not cached.
+	 *
+	 * @param stream midi data
+	 * @return compiled song
+	 * @throws InvalidMidiDataException if the stream is not valid midi data
+	 * @throws IOException if the stream cannot be read
+	 */
+	public static MidiSong load(InputStream stream)
+		throws InvalidMidiDataException, IOException
+	{ return compile(MidiSystem.getSequence(stream), 0L); }
+
+	/**
+	 * Compiles a midi sequence into a song.
+	 *
+	 * @param seq midi sequence
+	 * @return compiled song
+	 */
+	public static MidiSong compile(Sequence seq)
+	{ return compile(seq, 0L); }
+
+	private static MidiSong compile(Sequence seq, long lastModified)
+	{
+		// merge the tracks, keeping the order of events at the same midi tick
+		List<MidiEvent> events = Lists.newArrayList();
+		for (Track track : seq.getTracks())
+			for (int i = 0; i < track.size(); ++i) events.add(track.get(i));
+
+		Collections.sort(events, new Comparator<MidiEvent>()
+		{
+			public int compare(MidiEvent a, MidiEvent b)
+			{ return a.getTick() < b.getTick() ? -1 : a.getTick() > b.getTick() ? 1 : 0; }
+		});
+
+		int notes = 0;
+		for (MidiEvent event : events) if (isNoteOn(event.getMessage())) ++notes;
+		MidiSong song = new MidiSong(notes, lastModified);
+
+		boolean smpte = seq.getDivisionType() != Sequence.PPQ;
+		double resolution = seq.getResolution();
+
+		// time in microseconds, tracked through tempo changes
+		double micros = 0.0;
+		long lastTick = 0L;
+		int tempo = DEFAULT_TEMPO;
+
+		Sound[] patches = new Sound[16];
+		Arrays.fill(patches, Sound.NOTE_PIANO);
+
+		int n = 0;
+		for (MidiEvent event : events)
+		{
+			long delta = event.getTick() - lastTick;
+			micros += smpte ? delta * 1000000.0 / (seq.getDivisionType() * resolution)
+				: delta * (double) tempo / resolution;
+			lastTick = event.getTick();
+
+			MidiMessage m = event.getMessage();
+			if (m instanceof MetaMessage && ((MetaMessage) m).getType() == META_TEMPO)
+			{
+				byte[] data = ((MetaMessage) m).getData();
+				if (data.length == 3) tempo = (data[0] & 0xFF) << 16 | (data[1] & 0xFF) << 8 | (data[2] & 0xFF);
+			}
+			else if (m instanceof ShortMessage)
+			{
+				ShortMessage smessage = (ShortMessage) m;
+				if (smessage.getCommand() == ShortMessage.PROGRAM_CHANGE)
+					patches[smessage.getChannel()] = MidiUtil.patchToInstrument(smessage.getData1());
+
+				else if (isNoteOn(smessage))
+				{
+					song.ticks[n] = (int) Math.round(micros * TICKS_PER_SECOND / 1000000.0);
+					song.instruments[n] = patches[smessage.getChannel()];
+					song.pitches[n] = (float) ToneUtil.midiToPitch(smessage);
+					song.volumes[n] = VOLUME_RANGE * (smessage.getData2() / 127.0f);
+					++n;
+				}
+			}
+		}
+		return song;
+	}
+
+	private static boolean isNoteOn(MidiMessage m)
+	{
+		if (!(m instanceof ShortMessage)) return false;
+		ShortMessage smessage = (ShortMessage) m;
+
+		// a note on with no velocity is a note off, and notes too low can't be played
+		return smessage.getCommand() == ShortMessage.NOTE_ON && smessage.getData2() > 0
+			&& ToneUtil.isPlayable(smessage.getData1());
+	}
+}
@@ -6,48 +6,29 @@ import java.io.InputStream;
 import java.util.Set;
 
 import javax.sound.midi.InvalidMidiDataException;
-import javax.sound.midi.MidiSystem;
-import javax.sound.midi.MidiUnavailableException;
-import javax.sound.midi.Sequence;
-import javax.sound.midi.Sequencer;
 
 import org.bukkit.Sound;
 import org.bukkit.entity.Player;
 
 /**
- * Utility for playing midi files for players to hear.
+ * Utility for playing midi files for players to hear. Songs are compiled once and
+ * played on the main thread by {@link MidiPlayer}.
  *
  * @author authorblues
  */
 public class MidiUtil
 {
-	private static void playMidi(Sequence seq, float tempo, Set<Player> listeners)
-		throws InvalidMidiDataException, IOException, MidiUnavailableException
-	{
-		Sequencer sequencer = MidiSystem.getSequencer(false);
-		sequencer.setSequence(seq);
-		sequencer.open();
-
-		// slow it down just a bit
-		sequencer.setTempoFactor(tempo);
-
-		NoteBlockReceiver noteblockRecv = new NoteBlockReceiver(listeners);
-		sequencer.getTransmitter().setReceiver(noteblockRecv);
-		sequencer.start();
-	}
-
 	public static void playMidi(File file, float tempo, Set<Player> listeners)
-		throws InvalidMidiDataException, IOException, MidiUnavailableException
-	{ playMidi(MidiSystem.getSequence(file), tempo, listeners); }
+		throws InvalidMidiDataException, IOException
+	{ MidiPlayer.play(MidiSong.load(file), tempo, listeners); }
 
 	public static void playMidi(InputStream stream, float tempo, Set<Player> listeners)
-		throws InvalidMidiDataException, IOException, MidiUnavailableException
-	{ playMidi(MidiSystem.getSequence(stream), tempo, listeners); }
+		throws InvalidMidiDataException, IOException
+	{ MidiPlayer.play(MidiSong.load(stream), tempo, listeners); }
 
 	public static boolean playMidiQuietly(File file, float tempo, Set<Player> listeners)
 	{
 		try { MidiUtil.playMidi(file, tempo, listeners); }
-		catch (MidiUnavailableException e) { e.printStackTrace(); return false; }
 		catch (InvalidMidiDataException e) { e.printStackTrace(); return false; }
 		catch (IOException e) { e.printStackTrace(); return false; }
 
@@ -56,7 +37,6 @@ public class MidiUtil
 	public static boolean playMidiQuietly(InputStream stream, float tempo, Set<Player> listeners)
 	{
 		try { MidiUtil.playMidi(stream, tempo, listeners); }
-		catch (MidiUnavailableException e) { e.printStackTrace(); return false; }
 		catch (InvalidMidiDataException e) { e.printStackTrace(); return false; }
 		catch (IOException e) { e.printStackTrace(); return false; }
 
@@ -30,6 +30,10 @@ public class ToneUtil
 		return new Note(semitones % 24);
 	}
 
+	// checks if a midi key can be converted into a Note
+	public static boolean isPlayable(int key)
+	{ return key >= MIDI_BASE_FSHARP % 12; }
+
 	// converts midi events into pitch
 	public static double midiToPitch(ShortMessage smsg)
 	{
@@ -1,6 +1,7 @@
 package org.mctourney.autoreferee.util.worldsearch;
 
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import org.mctourney.autoreferee.AutoRefPlayer;
 import org.mctourney.autoreferee.AutoRefTeam;
@@ -9,12 +10,40 @@ import org.mctourney.autoreferee.goals.AutoRefGoal;
 import org.mctourney.autoreferee.goals.AutoRefGoal.ItemStatus;
 import org.mctourney.autoreferee.util.BlockData;
 
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 public class ObjectiveExhaustion
 {
+	// Safety strategy: Concurrent map, removed by the master task when it finishes
+	private static ConcurrentMap<AutoRefTeam, ObjectiveExhaustionMasterTask> running = Maps.newConcurrentMap();
+
+	/**
+	 * Checks if an objective search is running for a team.
+	 */
+	public static boolean isSearching(AutoRefTeam team)
+	{ return running.containsKey(team); }
+
+	/**
+	 * Stops the objective search for a team, if one is running.
+	 *
+	 * @param reason reason the search was stopped
+	 * @return true if a search was stopped, otherwise false
+	 */
+	public static boolean cancelSearch(AutoRefTeam team, String reason)
+	{
+		ObjectiveExhaustionMasterTask task = running.get(team);
+		if (task != null) task.cancel(reason);
+		return task != null;
+	}
+
+	static void searchFinished(ObjectiveExhaustionMasterTask task)
+	{ running.remove(task.team, task); }
+
 	public static Set<BlockData> startSearch(AutoRefTeam team, AutoReferee plugin)
 	{
+		// only one search per team at a time
+		if (isSearching(team)) return null;
 		Set<BlockData> goals = Sets.newHashSet();
 
 		for (AutoRefGoal goal : team.getTeamGoals())
@@ -31,7 +60,10 @@ public class ObjectiveExhaustion
 
 		if (goals.isEmpty()) return null;
 
-		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new ObjectiveExhaustionMasterTask(team, goals));
+		ObjectiveExhaustionMasterTask task = new ObjectiveExhaustionMasterTask(team, goals);
+		running.put(team, task);
+
+		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, task);
 		return goals;
 	}
 }
@@ -4,14 +4,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.ChunkSnapshot;
-import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
@@ -45,27 +44,82 @@ public class ObjectiveExhaustionMasterTask implements Runnable
 	public Map<BlockData, Vector> results = Maps.newHashMap();
 	public final Object _LOCK_RESULTS = new Object();
 
+	// time spent taking chunk snapshots each tick, in milliseconds
+	private static final long DEFAULT_TICK_BUDGET = 5L;
+
+	// time between progress reports to referees, in milliseconds
+	private static final long PROGRESS_INTERVAL = 5000L;
+
 	/**
 	 * A stop-flag for the chunk snapshot worker threads.
 	 */
 	public volatile boolean all_snapshots_added;
+	public ConcurrentLinkedQueue<Vector> snapchunks = Queues.newConcurrentLinkedQueue();
 	public ConcurrentLinkedQueue<Vector> entitychunks = Queues.newConcurrentLinkedQueue();
 	public ConcurrentLinkedQueue<Vector> contchunks = Queues.newConcurrentLinkedQueue();
 	public LinkedBlockingQueue<ChunkSnapshot> snapshots = Queues.newLinkedBlockingQueue();
 	public ConcurrentLinkedQueue<_Entry<BlockData, Vector>> found = Queues.newConcurrentLinkedQueue();
 
+	private WorkerFetchSnapshots snapshotFetcher;
 	private WorkerEntitySearch entSearcher;
 	private WorkerContainerSearch containerSearcher;
 	private List<WorkerAsyncSearchSnapshots> searchers;
 	private WorkerValidateResults resultChecker;
 
+	private final int searcherCount;
+	private final long tickBudget;
+
+	private int totalChunks = 0;
+	private AtomicInteger chunksSearched = new AtomicInteger(0);
+
+	private volatile String cancelReason = null;
+
 	public ObjectiveExhaustionMasterTask(AutoRefTeam team, Set<BlockData> goals)
 	{
 		this.team = team;
 		this.searching = goals;
 		originalSearch = ImmutableSet.copyOf(goals);
+
+		// leave a core free for the main server thread
+		searcherCount = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		tickBudget = TimeUnit.MILLISECONDS.toNanos(plugin.getConfig().getLong(
+			"exhaustion-search.tick-budget-ms", DEFAULT_TICK_BUDGET));
 	}
 
+	/**
+	 * Gets the number of threads searching chunk snapshots.
+	 */
+	public int getSearcherCount()
+	{ return searcherCount; }
+
+	/**
+	 * Gets the time allowed for taking chunk snapshots each tick.
+	 *
+	 * @return tick budget, in nanoseconds
+	 */
+	public long getTickBudget()
+	{ return tickBudget; }
+
+	/**
+	 * Records that a chunk snapshot has been fully searched.
+	 */
+	public void chunkSearched()
+	{ chunksSearched.incrementAndGet(); }
+
+	/**
+	 * Stops this search. Referees will be notified with the provided reason.
+	 *
+	 * @param reason reason the search was stopped
+	 */
+	public void cancel(String reason)
+	{ cancelReason = reason; }
+
+	/**
+	 * Checks if this search has been stopped.
+	 */
+	public boolean isCancelled()
+	{ return cancelReason != null; }
+
 	@Override
 	// REMINDER: This is run async!
 	public void run()
@@ -73,6 +127,7 @@ public class ObjectiveExhaustionMasterTask implements Runnable
 		boolean interrupted = Thread.interrupted();
 
 		List<Vector> chunks = Lists.newArrayList(getChunkVectors());
+		totalChunks = chunks.size();
 
 		// Start entity searcher
 		entitychunks.addAll(chunks);
@@ -84,49 +139,26 @@ public class ObjectiveExhaustionMasterTask implements Runnable
 		containerSearcher = new WorkerContainerSearch(this);
 		containerSearcher.runTaskTimer(plugin, 1, 3);
 
-		// Start up chunk snapshot searchers
-		// TODO pick a count
-		searchers = Lists.newLinkedList();
-		WorkerAsyncSearchSnapshots tmp_searcher = new WorkerAsyncSearchSnapshots(this);
-		tmp_searcher.runTaskAsynchronously(plugin);
-		searchers.add(tmp_searcher);
-		tmp_searcher = new WorkerAsyncSearchSnapshots(this);
-		tmp_searcher.runTaskAsynchronously(plugin);
-		searchers.add(tmp_searcher);
-		tmp_searcher = new WorkerAsyncSearchSnapshots(this);
-		tmp_searcher.runTaskAsynchronously(plugin);
-		searchers.add(tmp_searcher);
+		// Start up chunk snapshot searchers, one per spare core
+		searchers = Lists.newArrayListWithCapacity(searcherCount);
+		for (int i = 0; i < searcherCount; ++i)
+		{
+			WorkerAsyncSearchSnapshots searcher = new WorkerAsyncSearchSnapshots(this);
+			searcher.runTaskAsynchronously(plugin);
+			searchers.add(searcher);
+		}
+
+		// Start taking snapshots, a few milliseconds worth each tick
+		snapchunks.addAll(chunks);
+		snapshotFetcher = new WorkerFetchSnapshots(this);
+		snapshotFetcher.runTaskTimer(plugin, 0, 1);
 
 		// Start result checker
 		resultChecker = new WorkerValidateResults(this);
 		resultChecker.runTaskTimer(plugin, 2, 3);
 
-		for (int i = 0; i < chunks.size(); i += 10)
-		{
-			if (checkComplete())
-			{ cleanup(); return; }
-
-			int max = Math.max(chunks.size() - 1, i + 10);
-			List<Vector> sublist = chunks.subList(i, max);
-			Future<List<ChunkSnapshot>> future = Bukkit.getScheduler().callSyncMethod(plugin, new CallableGetSnapshots(sublist, team.getMatch().getWorld()));
-			List<ChunkSnapshot> value;
-			try
-			{
-				// Do the get inside the loop to rate-limit.
-				value = future.get();
-			}
-			catch (ExecutionException e)
-			{ e.printStackTrace(); quit(e.toString(), interrupted); return; }
-			catch (InterruptedException e)
-			{ e.printStackTrace(); quit("thread interrupted", true); return; }
-
-			// Memory consistency: variable set happens-before adding of final snapshots
-			if (i + 10 >= chunks.size())
-				all_snapshots_added = true;
-			snapshots.addAll(value);
-		}
 		chunks = null; // drop
-		snapshots.add(null); // poison-value, signal to stop trying to take
+		long nextProgress = System.currentTimeMillis() + PROGRESS_INTERVAL;
 
 		while (true)
 		{
@@ -135,19 +167,37 @@ public class ObjectiveExhaustionMasterTask implements Runnable
 				Thread.sleep(50);
 			}
 			catch (InterruptedException e)
-			{ interrupted = true; }
+			{ cancel("thread interrupted"); interrupted = true; }
+
+			if (!isCancelled() && !team.getMatch().getCurrentState().inProgress())
+				cancel("match is no longer in progress");
+
+			if (isCancelled())
+			{
+				cleanup();
+				quit(cancelReason, interrupted);
+				return;
+			}
 
 			if (checkComplete())
 			{
 				cleanup();
+				if (interrupted) Thread.currentThread().interrupt();
 				return;
 			}
+
+			if (System.currentTimeMillis() > nextProgress)
+			{
+				nextProgress += PROGRESS_INTERVAL;
+				reportProgress();
+			}
 		}
 	}
 
 	private void cleanup()
 	{
 		// Cancel timer tasks first
+		tryCancel(snapshotFetcher);
 		tryCancel(entSearcher);
 		tryCancel(containerSearcher);
 		tryCancel(resultChecker);
@@ -155,11 +205,12 @@ public class ObjectiveExhaustionMasterTask implements Runnable
 		// Prepare all the "done" signals
 		all_snapshots_added = true;
 		snapshots.clear();
-		snapshots.add(null);
 		for (WorkerAsyncSearchSnapshots searcher : searchers)
 		{
 			tryCancel(searcher);
 		}
+
+		ObjectiveExhaustion.searchFinished(this);
 	}
 
 	private void tryCancel(BukkitRunnable r)
@@ -168,16 +219,31 @@ public class ObjectiveExhaustionMasterTask implements Runnable
 		catch (IllegalStateException ignored) { }
 	}
 
-	// unsafe
-	private void quit(String message, boolean interrupted)
+	private void quit(final String message, boolean interrupted)
 	{
-		for (Player p : team.getMatch().getReferees())
-			p.sendMessage(ChatColor.RED + "The exhaustion search for " + team.getDisplayName() + " was stopped: " + ChatColor.DARK_RED + message);
+		Bukkit.getScheduler().runTask(plugin, new Runnable() { public void run()
+		{
+			for (Player p : team.getMatch().getReferees())
+				p.sendMessage(ChatColor.RED + "The exhaustion search for " + team.getDisplayName() + ChatColor.RED + " was stopped: " + ChatColor.DARK_RED + message);
+		} });
 
 		if (interrupted)
 			Thread.currentThread().interrupt();
 	}
 
+	private void reportProgress()
+	{
+		final int searched = chunksSearched.get();
+		final int percent = totalChunks == 0 ? 100 : 100 * searched / totalChunks;
+
+		Bukkit.getScheduler().runTask(plugin, new Runnable() { public void run()
+		{
+			for (Player p : team.getMatch().getReferees())
+				p.sendMessage(ChatColor.GRAY + "Objective search for " + team.getDisplayName() + ChatColor.GRAY +
+					String.format(": %d%% (%d/%d chunks)", percent, searched, totalChunks));
+		} });
+	}
+
 	private Set<Vector> getChunkVectors()
 	{
 		Set<Vector> chunks = Sets.newHashSet();
@@ -194,14 +260,24 @@ public class ObjectiveExhaustionMasterTask implements Runnable
 		int czmax = (int) Math.floor(bound.z2) >> 4;
 		int czmin = (int) Math.floor(bound.z1) >> 4;
 		int cxmax = (int) Math.floor(bound.x2) >> 4;
-		for (int cx = (int) Math.floor(bound.x1) >> 4; cx < cxmax; cx++)
-			for (int cz = czmin; cz < czmax; cz++)
+		for (int cx = (int) Math.floor(bound.x1) >> 4; cx <= cxmax; cx++)
+			for (int cz = czmin; cz <= czmax; cz++)
 				chunks.add(new Vector(cx, 0, cz));
 	}
 
+	// true once every worker has finished and every result has been validated
+	private boolean searchExhausted()
+	{
+		if (!snapshotFetcher.finished || !entSearcher.finished || !containerSearcher.finished)
+			return false;
+		for (WorkerAsyncSearchSnapshots searcher : searchers)
+			if (!searcher.finished) return false;
+		return found.isEmpty();
+	}
+
 	private boolean checkComplete()
 	{
-		if (searching.isEmpty())
+		if (searching.isEmpty() || searchExhausted())
 		{
 			synchronized (_LOCK_RESULTS) {
 				// make results safe to read
@@ -217,8 +293,12 @@ public class ObjectiveExhaustionMasterTask implements Runnable
 				sb.append('\n');
 				for (BlockData bd : originalSearch)
 				{
-					Location loc = results.get(bd).toLocation(world);
-					sb.append(bd.getDisplayName()).append(ChatColor.GRAY).append(" is at ").append(ChatColor.RED).append(LocationUtil.toBlockCoords(loc));
+					Vector vec = results.get(bd);
+					if (vec == null)
+						sb.append(bd.getDisplayName()).append(ChatColor.GRAY).append(" could not be found");
+					else
+						sb.append(bd.getDisplayName()).append(ChatColor.GRAY).append(" is at ").append(ChatColor.RED)
+							.append(LocationUtil.toBlockCoords(vec.toLocation(world)));
 					sb.append('\n');
 				}
 				String[] message = sb.toString().split("\n");
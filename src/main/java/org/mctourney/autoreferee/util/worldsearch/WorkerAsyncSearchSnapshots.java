@@ -1,22 +1,20 @@
 package org.mctourney.autoreferee.util.worldsearch;
 
+import java.util.BitSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.lang.ArrayUtils;
-import org.apache.commons.lang.Validate;
 import org.bukkit.ChunkSnapshot;
-import org.bukkit.Material;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.util.Vector;
 import org.mctourney.autoreferee.util.BlockData;
-
-import com.google.common.collect.Sets;
+import org.mctourney.autoreferee.util.Profiler;
 
 /**
  * Consumes: ObjectiveExhaustionMasterTask.snapshots<br>
  * Output: ObjectiveExhaustionMasterTask.found<br>
- * Output: ObjectiveExhaustionMasterTask.foundContainers<br>
- * Cancellation: Self-cancels upon master.all_snapshots_added and queue empty
+ * Cancellation: Self-cancels upon master.all_snapshots_added and queue empty, or
+ * when the master is cancelled
  *
  * Searches the ChunkSnapshots for the goal blocks.
  *
@@ -28,6 +26,10 @@ public class WorkerAsyncSearchSnapshots extends BukkitRunnable
 	public volatile boolean finished = false;
 	private ObjectiveExhaustionMasterTask master;
 
+	// block type filter, rebuilt whenever the set of goals changes
+	private Set<BlockData> filterGoals = null;
+	private BitSet interesting = null;
+
 	public WorkerAsyncSearchSnapshots(ObjectiveExhaustionMasterTask task)
 	{
 		master = task;
@@ -42,29 +44,24 @@ public class WorkerAsyncSearchSnapshots extends BukkitRunnable
 		try
 		{
 			// Blocking run until everything's available
-			while (!master.all_snapshots_added)
+			while (!master.all_snapshots_added && !master.isCancelled())
 			{
-				consume(master.snapshots.take());
+				ChunkSnapshot snap = master.snapshots.poll(50, TimeUnit.MILLISECONDS);
+				if (snap != null) consume(snap);
 			}
 
-			// Finish off by listening to special value
+			// Finish off whatever is left in the queue
 			ChunkSnapshot snap;
-			while ((snap = master.snapshots.poll()) != null)
+			while (!master.isCancelled() && (snap = master.snapshots.poll()) != null)
 			{
 				consume(snap);
 			}
 		}
-		catch (IllegalArgumentException poisonSignal)
-		{
-			// thrown if null is recieved, which means we're done
-		}
 		catch (InterruptedException e)
 		{
 			e.printStackTrace();
 			wasInterrupted = true;
 		}
-		// Re-add null to the list, for the other workers to take
-		master.snapshots.offer(null);
 
 		finished = true;
 
@@ -74,15 +71,23 @@ public class WorkerAsyncSearchSnapshots extends BukkitRunnable
 
 	private void consume(ChunkSnapshot snap)
 	{
-		Validate.notNull(snap); // send stop signal if poison-value
+		// this task runs for the whole search, so time each chunk instead
+		if (!Profiler.isEnabled()) { search(snap); return; }
 
+		long start = System.nanoTime();
+		try { search(snap); }
+		finally { Profiler.record(master.team.getMatch().getWorld(), "WorkerAsyncSearchSnapshots", System.nanoTime() - start); }
+	}
+
+	private void search(ChunkSnapshot snap)
+	{
 		Set<BlockData> goals = master.searching; // safe due to COW
-		int[] interesting = buildInteresting(goals);
+		if (goals != filterGoals) buildInteresting(filterGoals = goals);
 
 		int baseX = snap.getX() << 4;
 		int baseZ = snap.getZ() << 4;
 
-		for (int sy = 0; sy < 16; sy++)
+		for (int sy = 0; sy < 16 && !goals.isEmpty(); sy++)
 		{
 			if (snap.isSectionEmpty(sy))
 				continue;
@@ -91,26 +96,24 @@ public class WorkerAsyncSearchSnapshots extends BukkitRunnable
 					for (int ix = 0; ix < 16; ix++)
 					{
 						int block = snap.getBlockTypeId(ix, py, iz);
-						if (ArrayUtils.contains(interesting, block))
+						if (interesting.get(block))
 						{
 							Vector pos = new Vector(baseX + ix, py, baseZ + iz);
-							BlockData bd = new BlockData(Material.getMaterial(block), (byte) snap.getBlockData(ix, py, iz));
+							int key = BlockData.key(block, snap.getBlockData(ix, py, iz));
 							for (BlockData data : goals)
-								if (data.equals(bd))
+								if (data.matchesKey(key))
 									master.found.add(new _Entry<BlockData, Vector>(data, pos));
 						}
 					}
 		}
+		master.chunkSearched();
 	}
 
-	// Often this will just return the equivalent of new int[] { 35 } but whatever.
-	private static int[] buildInteresting(Set<BlockData> goals)
+	// Often this will just be the equivalent of { 35 } but whatever.
+	private void buildInteresting(Set<BlockData> goals)
 	{
-		Set<Integer> filterGoals = Sets.newHashSet();
+		interesting = new BitSet(256);
 		for (BlockData data : goals)
-		{
-			filterGoals.add(data.getMaterial().getId());
-		}
-		return ArrayUtils.toPrimitive(filterGoals.toArray(new Integer[filterGoals.size()]));
+			interesting.set(data.getMaterial().getId());
 	}
 }
@@ -9,21 +9,22 @@ import org.bukkit.block.Chest;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.util.Vector;
 import org.mctourney.autoreferee.util.BlockData;
+import org.mctourney.autoreferee.util.ProfiledRunnable;
 
 /**
- * Consumes: ObjectiveExhaustionMasterTask.foundContainers<br>
+ * Consumes: ObjectiveExhaustionMasterTask.contchunks<br>
  * Output: ObjectiveExhaustionMasterTask.found<br>
- * Cancellation: Handled by master
+ * Cancellation: Self, on depletion
  *
  * Checks containers for the goals, and adds the results to the found field.
  *
  * @author kane
  */
-public class WorkerContainerSearch extends BukkitRunnable
+public class WorkerContainerSearch extends ProfiledRunnable
 {
+	public volatile boolean finished = false;
 	private ObjectiveExhaustionMasterTask master;
 
 	public WorkerContainerSearch(ObjectiveExhaustionMasterTask task)
@@ -32,17 +33,19 @@ public class WorkerContainerSearch extends BukkitRunnable
 	}
 
 	@Override
-	public void run()
-	{
-		if (master.contchunks.isEmpty()) return;
+	protected World getProfiledWorld()
+	{ return master.team.getMatch().getWorld(); }
 
+	@Override
+	protected void tick()
+	{
 		World world = master.team.getMatch().getWorld();
 		Location loc = new Location(world, 0, 0, 0);
 		Set<BlockData> goals = master.searching;
 		for (int i = 0; i < 15; i++) // 15 chunks per run
 		{
-			Vector vec = master.entitychunks.poll();
-			if (vec == null) { this.cancel(); return; }
+			Vector vec = master.contchunks.poll();
+			if (vec == null) { finished = true; this.cancel(); return; }
 			BlockState[] containers = world.getChunkAt(vec.getBlockX(), vec.getBlockZ()).getTileEntities(); // actually chunk-coords
 
 			for (BlockState state : containers)
@@ -63,9 +66,10 @@ public class WorkerContainerSearch extends BukkitRunnable
 	{
 		for (ItemStack item : inv.getContents())
 		{
-			BlockData bd = BlockData.fromItemStack(item);
+			if (item == null) continue;
+			int key = BlockData.keyOf(item);
 			for (BlockData data : goals)
-				if (data.equals(bd))
+				if (data.matchesKey(key))
 					master.found.add(new _Entry<BlockData, Vector>(data, loc.toVector()));
 		}
 	}
@@ -28,9 +28,9 @@ import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.material.MaterialData;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.util.Vector;
 import org.mctourney.autoreferee.util.BlockData;
+import org.mctourney.autoreferee.util.ProfiledRunnable;
 
 /**
  * Consumes: ObjectiveExhaustionMasterTask.entitychunks<br>
@@ -41,8 +41,9 @@ import org.mctourney.autoreferee.util.BlockData;
  *
  * @author kane
  */
-public class WorkerEntitySearch extends BukkitRunnable
+public class WorkerEntitySearch extends ProfiledRunnable
 {
+	public volatile boolean finished = false;
 	ObjectiveExhaustionMasterTask master;
 
 	public WorkerEntitySearch(ObjectiveExhaustionMasterTask task)
@@ -51,14 +52,18 @@ public class WorkerEntitySearch extends BukkitRunnable
 	}
 
 	@Override
-	public void run()
+	protected World getProfiledWorld()
+	{ return master.team.getMatch().getWorld(); }
+
+	@Override
+	protected void tick()
 	{
 		World world = master.team.getMatch().getWorld();
 		Set<BlockData> goals = master.searching;
 		for (int i = 0; i < 15; i++) // 15 chunks per run
 		{
 			Vector vec = master.entitychunks.poll();
-			if (vec == null) { this.cancel(); return; }
+			if (vec == null) { finished = true; this.cancel(); return; }
 			Entity[] entities = world.getChunkAt(vec.getBlockX(), vec.getBlockZ()).getEntities(); // actually chunk-coords
 
 			for (Entity ent : entities)
@@ -154,7 +159,7 @@ public class WorkerEntitySearch extends BukkitRunnable
 	private void submitMatches(BlockData found, Entity ent, Set<BlockData> goals)
 	{
 		for (BlockData bd : goals)
-			if (bd.equals(found))
+			if (bd.matches(found))
 				master.found.add(new _Entry<BlockData, Vector>(bd, ent.getLocation().toVector()));
 	}
 }
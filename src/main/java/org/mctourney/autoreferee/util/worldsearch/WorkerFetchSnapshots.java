@@ -0,0 +1,56 @@
+package org.mctourney.autoreferee.util.worldsearch;
+
+import org.bukkit.World;
+import org.bukkit.util.Vector;
+import org.mctourney.autoreferee.util.ProfiledRunnable;
+
+/**
+ * Consumes: ObjectiveExhaustionMasterTask.snapchunks<br>
+ * Output: ObjectiveExhaustionMasterTask.snapshots<br>
+ * Cancellation: Self, on depletion
+ *
+ * Takes chunk snapshots on the main thread, stopping each tick once the tick budget has
+ * been spent or enough snapshots are waiting to be searched.
+ */
+public class WorkerFetchSnapshots extends ProfiledRunnable
+{
+	public volatile boolean finished = false;
+	private ObjectiveExhaustionMasterTask master;
+
+	// snapshots waiting to be searched, per search worker
+	private static final int MAX_BACKLOG = 4;
+
+	public WorkerFetchSnapshots(ObjectiveExhaustionMasterTask task)
+	{
+		master = task;
+	}
+
+	@Override
+	protected World getProfiledWorld()
+	{ return master.team.getMatch().getWorld(); }
+
+	@Override
+	protected void tick()
+	{
+		World world = master.team.getMatch().getWorld();
+		long deadline = System.nanoTime() + master.getTickBudget();
+
+		while (master.snapshots.size() < MAX_BACKLOG * master.getSearcherCount())
+		{
+			Vector vec = master.snapchunks.poll();
+			if (vec == null) { finish(); return; }
+
+			master.snapshots.add(world.getChunkAt(vec.getBlockX(), vec.getBlockZ()).getChunkSnapshot());
+			if (System.nanoTime() > deadline) return;
+		}
+	}
+
+	private void finish()
+	{
+		// Memory consistency: all snapshots are added before the flag is set
+		master.all_snapshots_added = true;
+
+		finished = true;
+		this.cancel();
+	}
+}
@@ -2,9 +2,10 @@ package org.mctourney.autoreferee.util.worldsearch;
 
 import java.util.Set;
 
-import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.World;
 import org.bukkit.util.Vector;
 import org.mctourney.autoreferee.util.BlockData;
+import org.mctourney.autoreferee.util.ProfiledRunnable;
 
 import com.google.common.collect.Sets;
 
@@ -19,7 +20,7 @@ import com.google.common.collect.Sets;
  *
  * @author riking
  */
-public class WorkerValidateResults extends BukkitRunnable
+public class WorkerValidateResults extends ProfiledRunnable
 {
 	private final ObjectiveExhaustionMasterTask master;
 
@@ -29,7 +30,11 @@ public class WorkerValidateResults extends BukkitRunnable
 	}
 
 	@Override
-	public void run()
+	protected World getProfiledWorld()
+	{ return master.team.getMatch().getWorld(); }
+
+	@Override
+	protected void tick()
 	{
 		synchronized (master._LOCK_RESULTS) {
 			if (master.found.isEmpty()) return;
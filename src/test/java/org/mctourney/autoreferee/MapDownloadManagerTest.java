@@ -0,0 +1,107 @@
+package org.mctourney.autoreferee;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class MapDownloadManagerTest
+{
+	private static final byte[] MAP_DATA = new byte[300 * 1024];
+	static { new Random(42L).nextBytes(MAP_DATA); }
+
+	private HttpServer server;
+	private File library;
+	private URL url;
+
+	private volatile String lastRange;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		library = new File(FileUtils.getTempDirectory(), "autoref-download-" + System.nanoTime());
+		FileUtils.forceMkdir(library);
+
+		// serves the map zip, honouring simple "bytes=N-" range requests
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/map.zip", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				String range = lastRange = exchange.getRequestHeaders().getFirst("Range");
+				int offset = range == null ? 0 : Integer.parseInt(range.replaceAll("[^0-9]", ""));
+
+				exchange.sendResponseHeaders(offset > 0 ? 206 : 200, MAP_DATA.length - offset);
+				OutputStream out = exchange.getResponseBody();
+				out.write(MAP_DATA, offset, MAP_DATA.length - offset);
+				out.close();
+			}
+		});
+		server.start();
+		url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/map.zip");
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		server.stop(0);
+		FileUtils.deleteQuietly(library);
+	}
+
+	@Test
+	public void testDownload() throws Exception
+	{
+		File dest = new File(library, "map.zip");
+		File zip = new MapDownloadManager(2).download(url, dest, DigestUtils.md5Hex(MAP_DATA), null)
+			.get(10, TimeUnit.SECONDS);
+
+		Assert.assertTrue(Arrays.equals(MAP_DATA, FileUtils.readFileToByteArray(zip)));
+		Assert.assertNull(lastRange);
+	}
+
+	@Test
+	public void testResume() throws Exception
+	{
+		File dest = new File(library, "map.zip");
+		FileUtils.writeByteArrayToFile(new File(library, "map.zip" + MapDownloadManager.PART_SUFFIX),
+			Arrays.copyOf(MAP_DATA, 1000));
+
+		File zip = new MapDownloadManager(2).download(url, dest, DigestUtils.md5Hex(MAP_DATA), null)
+			.get(10, TimeUnit.SECONDS);
+
+		Assert.assertTrue(Arrays.equals(MAP_DATA, FileUtils.readFileToByteArray(zip)));
+		Assert.assertEquals("bytes=1000-", lastRange);
+	}
+
+	@Test
+	public void testChecksumMismatch() throws Exception
+	{
+		File dest = new File(library, "map.zip");
+		try
+		{
+			new MapDownloadManager(2).download(url, dest, "00000000000000000000000000000000", null)
+				.get(10, TimeUnit.SECONDS);
+			Assert.fail("download should not have been verified");
+		}
+		catch (ExecutionException e) { Assert.assertTrue(e.getCause() instanceof IOException); }
+
+		Assert.assertFalse(dest.exists());
+		Assert.assertFalse(new File(library, "map.zip" + MapDownloadManager.PART_SUFFIX).exists());
+	}
+}
@@ -0,0 +1,129 @@
+package org.mctourney.autoreferee;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bukkit.plugin.messaging.Messenger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class RefereeChannelTest
+{
+	private static int readVarInt(DataInputStream in) throws IOException
+	{
+		int value = 0, shift = 0, b;
+		do { b = in.readUnsignedByte(); value |= (b & 0x7F) << shift; shift += 7; }
+		while ((b & 0x80) != 0);
+		return value;
+	}
+
+	// reference decoder for the frame format
+	private static List<String[]> decode(byte[] frame, boolean[] snapshot) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+		Assert.assertEquals(RefereeChannel.VERSION, in.readUnsignedByte());
+		snapshot[0] = (in.readUnsignedByte() & RefereeChannel.FLAG_SNAPSHOT) != 0;
+
+		List<String> strings = Lists.newArrayList();
+		List<String[]> messages = Lists.newArrayList();
+		for (int count = readVarInt(in); count > 0; --count)
+		{
+			String[] parts = new String[readVarInt(in)];
+			for (int i = 0; i < parts.length; ++i)
+			{
+				int index = readVarInt(in);
+				if (index == 0)
+				{
+					byte[] bytes = new byte[readVarInt(in)];
+					in.readFully(bytes);
+					strings.add(parts[i] = new String(bytes, "UTF-8"));
+				}
+				else parts[i] = strings.get(index - 1);
+			}
+			messages.add(parts);
+		}
+		Assert.assertEquals(-1, in.read());
+		return messages;
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception
+	{
+		List<String[]> messages = Lists.newArrayList();
+		messages.add(new String[]{ "player", "Notch", "hp", "20" });
+		messages.add(new String[]{ "player", "Notch", "armor", "20" });
+		messages.add(new String[]{ "team", "Red", "player", "+Notch" });
+
+		List<byte[]> frames = RefereeChannel.encode(messages, true);
+		Assert.assertEquals(1, frames.size());
+
+		boolean[] snapshot = new boolean[1];
+		List<String[]> decoded = decode(frames.get(0), snapshot);
+
+		Assert.assertTrue(snapshot[0]);
+		Assert.assertEquals(messages.size(), decoded.size());
+		for (int i = 0; i < messages.size(); ++i)
+			Assert.assertTrue(Arrays.equals(messages.get(i), decoded.get(i)));
+	}
+
+	@Test
+	public void testSplitFrames() throws Exception
+	{
+		List<String[]> messages = Lists.newArrayList();
+		for (int i = 0; i < 5000; ++i)
+			messages.add(new String[]{ "player", "player" + i, "kills", Integer.toString(i) });
+
+		List<byte[]> frames = RefereeChannel.encode(messages, true);
+		Assert.assertTrue(frames.size() > 1);
+
+		int total = 0;
+		boolean[] snapshot = new boolean[1];
+		for (int f = 0; f < frames.size(); ++f)
+		{
+			Assert.assertTrue(frames.get(f).length <= Messenger.MAX_MESSAGE_SIZE);
+			for (String[] parts : decode(frames.get(f), snapshot))
+				Assert.assertTrue(Arrays.equals(messages.get(total++), parts));
+			Assert.assertEquals(f == 0, snapshot[0]);
+		}
+		Assert.assertEquals(messages.size(), total);
+	}
+
+	@Test
+	public void testShadow()
+	{
+		RefereeChannel.Session session = new RefereeChannel.Session();
+		Assert.assertTrue(session.queue("player", "Notch", "hp", "20"));
+
+		// unchanged state fields are left out, changed ones are not
+		Assert.assertFalse(session.queue("player", "Notch", "hp", "20"));
+		Assert.assertTrue(session.queue("player", "Notch", "hp", "19"));
+		Assert.assertTrue(session.queue("player", "jeb_", "hp", "19"));
+
+		// events are always sent, even if repeated
+		Assert.assertTrue(session.queue("player", "Notch", "deathpos", "0,64,0"));
+		Assert.assertTrue(session.queue("player", "Notch", "deathpos", "0,64,0"));
+		Assert.assertEquals(5, session.pending.size());
+	}
+
+	@Test
+	public void testSnapshotResetsShadow()
+	{
+		RefereeChannel.Session session = new RefereeChannel.Session();
+		session.queue("player", "Notch", "hp", "20");
+		session.queue("team", "Red", "name", "Red");
+
+		session.startSnapshot();
+		Assert.assertTrue(session.snapshot);
+		Assert.assertTrue(session.pending.isEmpty());
+
+		// after a resync, everything is sent again
+		Assert.assertTrue(session.queue("player", "Notch", "hp", "20"));
+		Assert.assertTrue(session.queue("team", "Red", "name", "Red"));
+		Assert.assertEquals(2, session.pending.size());
+	}
+}
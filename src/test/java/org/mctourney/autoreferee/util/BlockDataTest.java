@@ -0,0 +1,60 @@
+package org.mctourney.autoreferee.util;
+
+import org.bukkit.DyeColor;
+import org.bukkit.Material;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockDataTest
+{
+	@Test
+	public void testKeys() throws Exception
+	{
+		BlockData red = new BlockData(Material.WOOL, DyeColor.RED.getWoolData());
+		BlockData blue = new BlockData(Material.WOOL, DyeColor.BLUE.getWoolData());
+		BlockData wool = new BlockData(Material.WOOL);
+
+		Assert.assertEquals((35 << 8) | 14, red.toKey());
+		Assert.assertEquals((35 << 8) | 0xFF, wool.toKey());
+		Assert.assertEquals(wool.toKey(), BlockData.wildcard(red.toKey()));
+		Assert.assertEquals(red, BlockData.fromKey(red.toKey()));
+		Assert.assertEquals(wool, BlockData.fromKey(wool.toKey()));
+
+		Assert.assertFalse(red.hashCode() == blue.hashCode());
+	}
+
+	@Test
+	public void testMatches() throws Exception
+	{
+		BlockData red = new BlockData(Material.WOOL, DyeColor.RED.getWoolData());
+		BlockData blue = new BlockData(Material.WOOL, DyeColor.BLUE.getWoolData());
+		BlockData wool = new BlockData(Material.WOOL);
+
+		Assert.assertFalse(red.equals(blue));
+		Assert.assertFalse(red.equals(wool));
+		Assert.assertEquals(red, new BlockData(Material.WOOL, DyeColor.RED.getWoolData()));
+
+		Assert.assertTrue(red.matches(wool));
+		Assert.assertTrue(wool.matches(red));
+		Assert.assertFalse(red.matches(blue));
+		Assert.assertFalse(wool.matches(BlockData.AIR));
+
+		Assert.assertTrue(red.matchesKey(red.toKey()));
+		Assert.assertTrue(red.matchesKey(wool.toKey()));
+		Assert.assertTrue(wool.matchesKey(blue.toKey()));
+		Assert.assertFalse(red.matchesKey(blue.toKey()));
+	}
+
+	@Test
+	public void testIntIntMap() throws Exception
+	{
+		IntIntMap map = new IntIntMap(2);
+		for (int i = 0; i < 1000; ++i) map.put(i << 8, i);
+		for (int i = 0; i < 1000; ++i) map.adjust(i << 8, 1);
+
+		Assert.assertEquals(1000, map.size());
+		Assert.assertEquals(501, map.get(500 << 8, -1));
+		Assert.assertEquals(-1, map.get(1, -1));
+		Assert.assertFalse(map.containsKey(1000 << 8));
+	}
+}
@@ -0,0 +1,119 @@
+package org.mctourney.autoreferee.util;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class EventExporterTest
+{
+	private HttpServer server;
+	private URL url;
+
+	private final List<String> received = Lists.newArrayList();
+	private volatile int requests = 0, failures = 0;
+	private volatile CountDownLatch blocked = null;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		// stands in for the node server, recording every message it receives
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				try { if (blocked != null) blocked.await(); }
+				catch (InterruptedException ignored) {  }
+
+				++requests;
+				String body = IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+				int status = 200;
+				if (failures > 0) { --failures; status = 503; }
+				else synchronized (received)
+				{
+					for (String param : body.split("&")) if (param.startsWith("msg="))
+						received.add(URLDecoder.decode(param.substring(4), "UTF-8"));
+				}
+
+				exchange.sendResponseHeaders(status, -1);
+				exchange.close();
+			}
+		});
+		server.start();
+		url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		if (blocked != null) blocked.countDown();
+		server.stop(0);
+	}
+
+	private void awaitSent(EventExporter exporter, long count) throws Exception
+	{
+		long deadline = System.currentTimeMillis() + 10000L;
+		while (exporter.getSentCount() < count && System.currentTimeMillis() < deadline)
+			Thread.sleep(20L);
+	}
+
+	@Test
+	public void testBatchedInOrder() throws Exception
+	{
+		EventExporter exporter = new EventExporter(url, null, 1000, 100L, 3);
+		for (int i = 0; i < 200; ++i)
+			Assert.assertTrue(exporter.offer("world", "message " + i + " & more"));
+
+		awaitSent(exporter, 200);
+		exporter.shutdown(1000L);
+
+		Assert.assertEquals(200, received.size());
+		for (int i = 0; i < 200; ++i) Assert.assertEquals("message " + i + " & more", received.get(i));
+		Assert.assertTrue(requests < 200);
+		Assert.assertEquals(0, exporter.getDroppedCount());
+	}
+
+	@Test
+	public void testRetry() throws Exception
+	{
+		failures = 2;
+		EventExporter exporter = new EventExporter(url, null, 100, 10L, 3);
+		exporter.offer("world", "hello");
+
+		awaitSent(exporter, 1);
+		exporter.shutdown(1000L);
+
+		Assert.assertEquals(Lists.newArrayList("hello"), received);
+		Assert.assertEquals(0, exporter.getDroppedCount());
+	}
+
+	@Test
+	public void testBackpressure() throws Exception
+	{
+		blocked = new CountDownLatch(1);
+		EventExporter exporter = new EventExporter(url, null, 10, 10L, 0);
+
+		int queued = 0;
+		for (int i = 0; i < 100; ++i) if (exporter.offer("world", "message " + i)) ++queued;
+
+		Assert.assertTrue(queued < 100);
+		Assert.assertEquals(100 - queued, exporter.getDroppedCount());
+
+		blocked.countDown();
+		exporter.shutdown(1000L);
+	}
+}
@@ -0,0 +1,52 @@
+package org.mctourney.autoreferee.util;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProfilerTest
+{
+	@After
+	public void tearDown()
+	{ Profiler.reset(); }
+
+	@Test
+	public void testCounts()
+	{
+		for (int i = 1; i <= 100; ++i) Profiler.record(null, "slow", i * 1000L);
+		Profiler.record(null, "fast", 50L);
+
+		List<Profiler.Timing> timings = Profiler.getTimings(Profiler.GLOBAL);
+		Assert.assertEquals(2, timings.size());
+
+		// slowest first
+		Profiler.Timing slow = timings.get(0);
+		Assert.assertEquals("slow", slow.getName());
+		Assert.assertEquals(100L, slow.getCount());
+		Assert.assertEquals(5050000L, slow.getTotal());
+		Assert.assertEquals(100000L, slow.getMax());
+	}
+
+	@Test
+	public void testPercentile()
+	{
+		for (int i = 0; i < 99; ++i) Profiler.record(null, "task", 1000L);
+		Profiler.record(null, "task", 1000000L);
+
+		// within a factor of two, and never above the slowest call
+		Profiler.Timing timing = Profiler.getTimings(Profiler.GLOBAL).get(0);
+		long p50 = timing.getPercentile(0.50);
+		Assert.assertTrue(p50 >= 1000L && p50 <= 2000L);
+		Assert.assertEquals(1000000L, timing.getPercentile(1.0));
+	}
+
+	@Test
+	public void testReset()
+	{
+		Profiler.record(null, "task", 1000L);
+		Profiler.reset();
+		Assert.assertTrue(Profiler.getTimings(Profiler.GLOBAL).isEmpty());
+	}
+}
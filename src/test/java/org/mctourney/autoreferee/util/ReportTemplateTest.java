@@ -0,0 +1,28 @@
+package org.mctourney.autoreferee.util;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class ReportTemplateTest
+{
+	@Test
+	public void testRender() throws Exception
+	{
+		ReportTemplate template = new ReportTemplate(
+			"<title>#title#</title><a href='#top'>#title# on #map#</a>#unknown#");
+
+		Map<String, ReportTemplate.Section> sections = Maps.newHashMap();
+		sections.put("title", ReportTemplate.text("$1 Match"));
+		sections.put("map", ReportTemplate.text(null));
+
+		StringWriter out = new StringWriter();
+		template.render(out, sections);
+
+		Assert.assertEquals("<title>$1 Match</title><a href='#top'>$1 Match on </a>#unknown#", out.toString());
+	}
+}
@@ -0,0 +1,58 @@
+package org.mctourney.autoreferee.util.midi;
+
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import org.bukkit.Sound;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MidiSongTest
+{
+	private static MidiMessage note(int channel, int key, int velocity) throws Exception
+	{
+		ShortMessage m = new ShortMessage();
+		m.setMessage(ShortMessage.NOTE_ON, channel, key, velocity);
+		return m;
+	}
+
+	private static MidiMessage tempo(int micros) throws Exception
+	{
+		MetaMessage m = new MetaMessage();
+		m.setMessage(0x51, new byte[]{ (byte) (micros >> 16), (byte) (micros >> 8), (byte) micros }, 3);
+		return m;
+	}
+
+	@Test
+	public void testSchedule() throws Exception
+	{
+		Sequence seq = new Sequence(Sequence.PPQ, 480);
+		Track a = seq.createTrack(), b = seq.createTrack();
+
+		ShortMessage patch = new ShortMessage();
+		patch.setMessage(ShortMessage.PROGRAM_CHANGE, 1, 33, 0);
+		b.add(new MidiEvent(patch, 0));
+
+		// half a second per quarter note, then twice as fast
+		a.add(new MidiEvent(note(0, 60, 127), 0));
+		a.add(new MidiEvent(tempo(250000), 480));
+		b.add(new MidiEvent(note(1, 64, 64), 480));
+		a.add(new MidiEvent(note(0, 60, 0), 480));
+		a.add(new MidiEvent(note(0, 67, 127), 960));
+
+		MidiSong song = MidiSong.compile(seq);
+		Assert.assertEquals(3, song.size());
+
+		Assert.assertArrayEquals(new int[]{ 0, 10, 15 }, song.ticks);
+		Assert.assertEquals(15, song.getLength());
+
+		Assert.assertEquals(Sound.NOTE_PIANO, song.instruments[0]);
+		Assert.assertEquals(Sound.NOTE_BASS, song.instruments[1]);
+		Assert.assertTrue(song.volumes[1] < song.volumes[0]);
+		Assert.assertTrue(song.pitches[2] > song.pitches[0]);
+	}
+}